@@ -0,0 +1,134 @@
+package com.testapp.amazontvsample;
+
+import android.os.Parcel;
+import android.os.SystemClock;
+import android.util.Log;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+/**
+ * Compares the Parcelable and Serializable forms of {@link Movie}: encode and decode time and
+ * encoded size. Timings are logged under {@link #TAG}, the test only checks the round trips.
+ */
+public class MovieParcelBenchmark extends TestCase {
+    private static final String TAG = "MovieParcelBenchmark";
+    private static final int WARMUP = 200;
+    private static final int ITERATIONS = 2000;
+
+    private Movie mMovie;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mMovie = MovieList.buildMovieInfo(MovieList.MOVIE_CATEGORY[2],
+                "Introducing Gmail Blue",
+                "Fusce id nisi turpis. Praesent viverra bibendum semper. Donec tristique, orci sed "
+                        + "semper lacinia, quam erat rhoncus massa, non congue tellus est quis tellus.",
+                "Studio Two",
+                "https://commondatastorage.googleapis.com/android-tv/Sample%20videos/April%20Fool's%202013/Introducing%20Gmail%20Blue.mp4",
+                "https://commondatastorage.googleapis.com/android-tv/Sample%20videos/April%20Fool's%202013/Introducing%20Gmail%20Blue/card.jpg",
+                "https://commondatastorage.googleapis.com/android-tv/Sample%20videos/April%20Fool's%202013/Introducing%20Gmail%20Blue/bg.jpg");
+    }
+
+    public void testParcelRoundTrip() {
+        assertSameMovie(mMovie, fromParcel(toParcel(mMovie)));
+
+        Movie uncategorized = MovieList.buildMovieInfo("Not a browse row", "t", null, null,
+                "v", "c", "b");
+        assertSameMovie(uncategorized, fromParcel(toParcel(uncategorized)));
+    }
+
+    public void testSerializableRoundTrip() throws Exception {
+        assertSameMovie(mMovie, deserialize(serialize(mMovie)));
+    }
+
+    public void testCompareEncodings() throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            fromParcel(toParcel(mMovie));
+            deserialize(serialize(mMovie));
+        }
+
+        long start = SystemClock.elapsedRealtimeNanos();
+        byte[] parcel = null;
+        for (int i = 0; i < ITERATIONS; i++) {
+            parcel = toParcel(mMovie);
+        }
+        long parcelEncode = SystemClock.elapsedRealtimeNanos() - start;
+        start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < ITERATIONS; i++) {
+            fromParcel(parcel);
+        }
+        long parcelDecode = SystemClock.elapsedRealtimeNanos() - start;
+
+        start = SystemClock.elapsedRealtimeNanos();
+        byte[] serialized = null;
+        for (int i = 0; i < ITERATIONS; i++) {
+            serialized = serialize(mMovie);
+        }
+        long serialEncode = SystemClock.elapsedRealtimeNanos() - start;
+        start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < ITERATIONS; i++) {
+            deserialize(serialized);
+        }
+        long serialDecode = SystemClock.elapsedRealtimeNanos() - start;
+
+        Log.i(TAG, String.format("Parcelable:   %d bytes, encode %d ns, decode %d ns",
+                parcel.length, parcelEncode / ITERATIONS, parcelDecode / ITERATIONS));
+        Log.i(TAG, String.format("Serializable: %d bytes, encode %d ns, decode %d ns",
+                serialized.length, serialEncode / ITERATIONS, serialDecode / ITERATIONS));
+    }
+
+    private static byte[] toParcel(Movie movie) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            movie.writeToParcel(parcel, 0);
+            return parcel.marshall();
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    private static Movie fromParcel(byte[] bytes) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcel.unmarshall(bytes, 0, bytes.length);
+            parcel.setDataPosition(0);
+            return Movie.CREATOR.createFromParcel(parcel);
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    private static byte[] serialize(Movie movie) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(movie);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static Movie deserialize(byte[] bytes) throws Exception {
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        try {
+            return (Movie) in.readObject();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void assertSameMovie(Movie expected, Movie actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getCategory(), actual.getCategory());
+        assertEquals(expected.getTitle(), actual.getTitle());
+        assertEquals(expected.getDescription(), actual.getDescription());
+        assertEquals(expected.getStudio(), actual.getStudio());
+        assertEquals(expected.getVideoUrl(), actual.getVideoUrl());
+        assertEquals(expected.getCardImageUrl(), actual.getCardImageUrl());
+        assertEquals(expected.getBackgroundImageUrl(), actual.getBackgroundImageUrl());
+    }
+}
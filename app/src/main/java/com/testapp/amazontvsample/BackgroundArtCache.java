@@ -0,0 +1,159 @@
+package com.testapp.amazontvsample;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LruCache;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.DecodeFormat;
+import com.bumptech.glide.request.animation.GlideAnimation;
+import com.bumptech.glide.request.target.SimpleTarget;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+ * Screen-sized background art, kept decoded so that going back to a title switches the
+ * background without decoding anything.
+ *
+ * Bitmaps are cached by URI, target size and variant, and the least recently used ones are
+ * evicted once the cache holds more than a few screens worth of pixels. A dimmed variant is
+ * derived from the plain one, so it costs no decode if the plain one is cached.
+ */
+public final class BackgroundArtCache {
+
+    public enum Variant {
+        PLAIN,
+        // Darkened so text on top of it stays readable.
+        DIMMED
+    }
+
+    public interface Callback {
+        /**
+         * Called on the main thread once the background for {@code uri} is ready.
+         */
+        void onBackgroundReady(String uri, Bitmap bitmap);
+
+        /**
+         * Called on the main thread if the background for {@code uri} cannot be loaded.
+         */
+        void onBackgroundFailed(String uri);
+    }
+
+    private static final int CACHED_SCREENS = 4;
+    private static final int LOW_RAM_CACHED_SCREENS = 2;
+    private static final int RGB_565_BYTES_PER_PIXEL = 2;
+    private static final int DIM_COLOR = 0x99000000;
+
+    private static BackgroundArtCache sInstance;
+
+    private final Context mContext;
+    private final LruCache<String, Bitmap> mCache;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+
+    public static synchronized BackgroundArtCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new BackgroundArtCache(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private BackgroundArtCache(Context context) {
+        mContext = context;
+        ActivityManager activityManager =
+                (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        int screens = activityManager.isLowRamDevice() ? LOW_RAM_CACHED_SCREENS : CACHED_SCREENS;
+        int screenBytes = context.getResources().getDisplayMetrics().widthPixels
+                * context.getResources().getDisplayMetrics().heightPixels
+                * RGB_565_BYTES_PER_PIXEL;
+        int heapBytes = activityManager.getMemoryClass() * 1024 * 1024;
+        mCache = new LruCache<String, Bitmap>(Math.min(screens * screenBytes, heapBytes / 8)) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getByteCount();
+            }
+        };
+    }
+
+    /**
+     * Returns the cached background, or {@code null}.
+     */
+    public Bitmap getCached(String uri, int width, int height, Variant variant) {
+        return mCache.get(keyOf(uri, width, height, variant));
+    }
+
+    /**
+     * Delivers the background for {@code uri} scaled and cropped to {@code width} x
+     * {@code height}, from the cache if it is there.
+     */
+    public void load(final String uri, final int width, final int height, final Variant variant,
+                     final Callback callback) {
+        Bitmap cached = getCached(uri, width, height, variant);
+        if (cached != null) {
+            callback.onBackgroundReady(uri, cached);
+            return;
+        }
+        if (variant == Variant.DIMMED) {
+            Bitmap plain = getCached(uri, width, height, Variant.PLAIN);
+            if (plain != null) {
+                dim(uri, width, height, plain, callback);
+                return;
+            }
+        }
+
+        // Kept here rather than in Glide's memory cache, so it is only held once. Loaded for the
+        // application, whose requests are never cleared, so Glide never hands the bitmap back
+        // to its pool while it is cached here.
+        Glide.with(mContext)
+                .load(uri)
+                .asBitmap()
+                .format(DecodeFormat.PREFER_RGB_565)
+                .centerCrop()
+                .skipMemoryCache(true)
+                .into(new SimpleTarget<Bitmap>(width, height) {
+                    @Override
+                    public void onResourceReady(Bitmap resource,
+                                                GlideAnimation<? super Bitmap> glideAnimation) {
+                        mCache.put(keyOf(uri, width, height, Variant.PLAIN), resource);
+                        if (variant == Variant.DIMMED) {
+                            dim(uri, width, height, resource, callback);
+                        } else {
+                            callback.onBackgroundReady(uri, resource);
+                        }
+                    }
+
+                    @Override
+                    public void onLoadFailed(Exception e, Drawable errorDrawable) {
+                        callback.onBackgroundFailed(uri);
+                    }
+                });
+    }
+
+    private void dim(final String uri, final int width, final int height, final Bitmap plain,
+                     final Callback callback) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Bitmap dimmed = plain.copy(Bitmap.Config.RGB_565, true);
+                new Canvas(dimmed).drawColor(DIM_COLOR);
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        mCache.put(keyOf(uri, width, height, Variant.DIMMED), dimmed);
+                        callback.onBackgroundReady(uri, dimmed);
+                    }
+                });
+            }
+        });
+    }
+
+    private static String keyOf(String uri, int width, int height, Variant variant) {
+        return uri + '@' + width + 'x' + height + '/' + variant.name();
+    }
+}
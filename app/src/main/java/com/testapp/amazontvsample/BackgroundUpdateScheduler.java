@@ -0,0 +1,59 @@
+package com.testapp.amazontvsample;
+
+import android.os.Handler;
+import android.os.Looper;
+
+/*
+ * Debounces background changes on the main thread. Each schedule() replaces the pending update,
+ * so only the last background asked for within the delay gets loaded.
+ *
+ * One runnable is posted to the main looper and re-posted on every call; no timer or thread is
+ * created.
+ */
+public class BackgroundUpdateScheduler {
+
+    public interface Listener {
+        /**
+         * Called on the main thread with the last scheduled background.
+         */
+        void onUpdateBackground(String uri);
+    }
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final long mDelayMillis;
+    private final Listener mListener;
+    private String mPendingUri;
+
+    private final Runnable mUpdate = new Runnable() {
+        @Override
+        public void run() {
+            String uri = mPendingUri;
+            mPendingUri = null;
+            if (uri != null) {
+                mListener.onUpdateBackground(uri);
+            }
+        }
+    };
+
+    public BackgroundUpdateScheduler(long delayMillis, Listener listener) {
+        mDelayMillis = delayMillis;
+        mListener = listener;
+    }
+
+    /**
+     * Loads {@code uri} as the background once no other background was scheduled for the delay.
+     */
+    public void schedule(String uri) {
+        mPendingUri = uri;
+        mHandler.removeCallbacks(mUpdate);
+        mHandler.postDelayed(mUpdate, mDelayMillis);
+    }
+
+    /**
+     * Drops the pending update, if any.
+     */
+    public void cancel() {
+        mPendingUri = null;
+        mHandler.removeCallbacks(mUpdate);
+    }
+}
@@ -0,0 +1,126 @@
+package com.testapp.amazontvsample;
+
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.support.v17.leanback.widget.ImageCardView;
+
+import com.bumptech.glide.Glide;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Holds back card image loads while the selection is moving fast, e.g. while a D-pad key is
+ * held down and leanback binds and recycles cards at key-repeat rate.
+ *
+ * Two selection moves closer than FAST_MOVE_INTERVAL pause the scheduler. Cards bound while it
+ * is paused show their placeholder and are only remembered; cards recycled in the meantime are
+ * forgotten. Once the selection has rested for SETTLE_DELAY the remembered cards are loaded, the
+ * selected card and the cards on screen first, and the listener is told so it can prefetch
+ * around the new selection.
+ */
+public class CardImageScheduler {
+    private static final long FAST_MOVE_INTERVAL = 120;
+    private static final long SETTLE_DELAY = 150;
+
+    public interface Listener {
+        /**
+         * Called once the selection has settled and the held back cards were loaded.
+         */
+        void onResumed();
+    }
+
+    private final Listener mListener;
+    private final Handler mHandler = new Handler();
+    private final Map<ImageCardView, Runnable> mPending =
+            new LinkedHashMap<ImageCardView, Runnable>();
+    private final Rect mVisibleRect = new Rect();
+    private long mLastMove;
+    private boolean mPaused;
+
+    private final Runnable mResume = new Runnable() {
+        @Override
+        public void run() {
+            resume();
+        }
+    };
+
+    public CardImageScheduler(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Called every time the selection moves.
+     */
+    public void onSelectionMoved() {
+        long now = SystemClock.uptimeMillis();
+        if (now - mLastMove < FAST_MOVE_INTERVAL) {
+            mPaused = true;
+        }
+        mLastMove = now;
+        if (mPaused) {
+            mHandler.removeCallbacks(mResume);
+            mHandler.postDelayed(mResume, SETTLE_DELAY);
+        }
+    }
+
+    public boolean isPaused() {
+        return mPaused;
+    }
+
+    /**
+     * Runs {@code load}, which loads the card's image, or shows {@code placeholder} and defers
+     * it while the selection moves fast.
+     */
+    void load(ImageCardView cardView, Drawable placeholder, Runnable load) {
+        if (mPaused) {
+            // Drop whatever the recycled card was still loading.
+            Glide.clear(cardView.getMainImageView());
+            cardView.setMainImage(placeholder);
+            mPending.put(cardView, load);
+        } else {
+            load.run();
+        }
+    }
+
+    /**
+     * Forgets a deferred load of a card that is being unbound.
+     */
+    void cancel(ImageCardView cardView) {
+        mPending.remove(cardView);
+    }
+
+    /**
+     * Drops every deferred load, e.g. when the screen goes away.
+     */
+    public void clear() {
+        mHandler.removeCallbacks(mResume);
+        mPending.clear();
+        mPaused = false;
+    }
+
+    private void resume() {
+        mPaused = false;
+        List<ImageCardView> offScreen = new ArrayList<ImageCardView>();
+        List<ImageCardView> onScreen = new ArrayList<ImageCardView>();
+        for (ImageCardView cardView : mPending.keySet()) {
+            if (cardView.isSelected()) {
+                onScreen.add(0, cardView);
+            } else if (cardView.isShown() && cardView.getGlobalVisibleRect(mVisibleRect)) {
+                onScreen.add(cardView);
+            } else {
+                offScreen.add(cardView);
+            }
+        }
+        onScreen.addAll(offScreen);
+        for (ImageCardView cardView : onScreen) {
+            mPending.get(cardView).run();
+        }
+        mPending.clear();
+        mListener.onResumed();
+    }
+}
@@ -0,0 +1,102 @@
+package com.testapp.amazontvsample;
+
+import android.content.Context;
+import android.support.v17.leanback.widget.HorizontalGridView;
+import android.support.v17.leanback.widget.ObjectAdapter;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.resource.drawable.GlideDrawable;
+import com.bumptech.glide.request.FutureTarget;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * Warms the memory cache with the card images just past the visible end of a row, on the side
+ * the selection is moving towards, so cards scrolled into view find their image there instead
+ * of showing the placeholder.
+ *
+ * Prefetches that fall out of the window, or belong to a row that lost the selection, are
+ * cancelled. Cancelling a finished prefetch leaves its image in the memory cache.
+ */
+public class CardPrefetcher {
+    private static final int PREFETCH_COUNT = 4;
+
+    private final Context mContext;
+    private final Map<String, FutureTarget<GlideDrawable>> mPrefetches =
+            new HashMap<String, FutureTarget<GlideDrawable>>();
+    private ObjectAdapter mAdapter;
+    private int mSelectedPosition;
+    private boolean mForward = true;
+
+    public CardPrefetcher(Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    /**
+     * Called when {@code position} in the row shown by {@code gridView} got selected.
+     */
+    public void onSelected(HorizontalGridView gridView, ObjectAdapter adapter, int position) {
+        if (adapter != mAdapter) {
+            mForward = true;
+        } else if (position != mSelectedPosition) {
+            mForward = position > mSelectedPosition;
+        }
+        mAdapter = adapter;
+        mSelectedPosition = position;
+
+        int first = Integer.MAX_VALUE;
+        int last = -1;
+        for (int i = 0; i < gridView.getChildCount(); i++) {
+            int childPosition = gridView.getChildAdapterPosition(gridView.getChildAt(i));
+            if (childPosition >= 0) {
+                first = Math.min(first, childPosition);
+                last = Math.max(last, childPosition);
+            }
+        }
+        if (last < 0) {
+            first = last = position;
+        }
+
+        Set<String> wanted = new LinkedHashSet<String>();
+        for (int k = 1; k <= PREFETCH_COUNT; k++) {
+            int next = mForward ? last + k : first - k;
+            if (next < 0 || next >= adapter.size()) {
+                break;
+            }
+            Object item = adapter.get(next);
+            if (item instanceof Movie && ((Movie) item).getCardImageUrl() != null) {
+                wanted.add(((Movie) item).getCardImageUrl());
+            }
+        }
+
+        Iterator<Map.Entry<String, FutureTarget<GlideDrawable>>> it =
+                mPrefetches.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, FutureTarget<GlideDrawable>> entry = it.next();
+            if (!wanted.contains(entry.getKey())) {
+                Glide.clear(entry.getValue());
+                it.remove();
+            }
+        }
+        for (String url : wanted) {
+            if (!mPrefetches.containsKey(url)) {
+                mPrefetches.put(url, CardPresenter.prefetchCardImage(mContext, url));
+            }
+        }
+    }
+
+    /**
+     * Cancels every prefetch, e.g. when the selection left the movie rows.
+     */
+    public void cancel() {
+        for (FutureTarget<GlideDrawable> prefetch : mPrefetches.values()) {
+            Glide.clear(prefetch);
+        }
+        mPrefetches.clear();
+        mAdapter = null;
+    }
+}
@@ -14,6 +14,7 @@
 
 package com.testapp.amazontvsample;
 
+import android.content.Context;
 import android.graphics.drawable.Drawable;
 import android.support.v17.leanback.widget.ImageCardView;
 import android.support.v17.leanback.widget.Presenter;
@@ -21,6 +22,9 @@ import android.util.Log;
 import android.view.ViewGroup;
 
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.resource.drawable.GlideDrawable;
+import com.bumptech.glide.request.FutureTarget;
+import com.bumptech.glide.request.target.Target;
 
 /*
  * A CardPresenter is used to generate Views and bind Objects to them on demand.
@@ -29,11 +33,23 @@ import com.bumptech.glide.Glide;
 public class CardPresenter extends Presenter {
     private static final String TAG = "CardPresenter";
 
-    private static final int CARD_WIDTH = 313;
-    private static final int CARD_HEIGHT = 176;
+    static final int CARD_WIDTH = 313;
+    static final int CARD_HEIGHT = 176;
     private static int sSelectedBackgroundColor;
     private static int sDefaultBackgroundColor;
     private Drawable mDefaultCardImage;
+    private final CardImageScheduler mImageScheduler;
+
+    public CardPresenter() {
+        this(null);
+    }
+
+    /**
+     * @param imageScheduler defers card images while the selection moves fast, may be null
+     */
+    public CardPresenter(CardImageScheduler imageScheduler) {
+        mImageScheduler = imageScheduler;
+    }
 
     private static void updateCardBackgroundColor(ImageCardView view, boolean selected) {
         int color = selected ? sSelectedBackgroundColor : sDefaultBackgroundColor;
@@ -70,25 +86,73 @@ public class CardPresenter extends Presenter {
         Movie movie = (Movie) item;
         ImageCardView cardView = (ImageCardView) viewHolder.view;
 
-        Log.d(TAG, "onBindViewHolder");
         if (movie.getCardImageUrl() != null) {
             cardView.setTitleText(movie.getTitle());
             cardView.setContentText(movie.getStudio());
             cardView.setMainImageDimensions(CARD_WIDTH, CARD_HEIGHT);
-            Glide.with(viewHolder.view.getContext())
-                    .load(movie.getCardImageUrl())
-                    .centerCrop()
-                    .error(mDefaultCardImage)
-                    .into(cardView.getMainImageView());
+            if (mImageScheduler != null) {
+                mImageScheduler.load(cardView, mDefaultCardImage,
+                        new CardImageLoad(cardView, movie));
+            } else {
+                loadCardImage(cardView, movie);
+            }
         }
     }
 
+    private void loadCardImage(ImageCardView cardView, Movie movie) {
+        Glide.with(cardView.getContext())
+                .load(movie.getCardImageUrl())
+                .centerCrop()
+                .error(mDefaultCardImage)
+                .into(cardView.getMainImageView());
+    }
+
+    /*
+     * Loads a card image into the memory cache the way onBindViewHolder would show it, so the
+     * card finds it there once bound. Clear the returned target with Glide.clear().
+     */
+    static FutureTarget<GlideDrawable> prefetchCardImage(Context context, String url) {
+        return Glide.with(context)
+                .load(url)
+                .centerCrop()
+                .into(CARD_WIDTH, CARD_HEIGHT);
+    }
+
+    /*
+     * Loads a card image the way onBindViewHolder shows it into a CARD_WIDTH x CARD_HEIGHT
+     * target, so a card already shown is served from the memory or disk cache.
+     */
+    static <Y extends Target<GlideDrawable>> Y loadCardImage(Context context, String url,
+                                                             Y target) {
+        return Glide.with(context)
+                .load(url)
+                .centerCrop()
+                .into(target);
+    }
+
     @Override
     public void onUnbindViewHolder(Presenter.ViewHolder viewHolder) {
-        Log.d(TAG, "onUnbindViewHolder");
         ImageCardView cardView = (ImageCardView) viewHolder.view;
+        if (mImageScheduler != null) {
+            mImageScheduler.cancel(cardView);
+        }
         // Remove references to images so that the garbage collector can free up memory
         cardView.setBadgeImage(null);
         cardView.setMainImage(null);
     }
+
+    private final class CardImageLoad implements Runnable {
+        private final ImageCardView mCardView;
+        private final Movie mMovie;
+
+        CardImageLoad(ImageCardView cardView, Movie movie) {
+            mCardView = cardView;
+            mMovie = movie;
+        }
+
+        @Override
+        public void run() {
+            loadCardImage(mCardView, mMovie);
+        }
+    }
 }
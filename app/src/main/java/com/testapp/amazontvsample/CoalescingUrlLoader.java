@@ -0,0 +1,249 @@
+package com.testapp.amazontvsample;
+
+import android.content.Context;
+import android.os.SystemClock;
+
+import com.bumptech.glide.Priority;
+import com.bumptech.glide.load.data.DataFetcher;
+import com.bumptech.glide.load.data.HttpUrlFetcher;
+import com.bumptech.glide.load.model.GenericLoaderFactory;
+import com.bumptech.glide.load.model.GlideUrl;
+import com.bumptech.glide.load.model.ModelLoader;
+import com.bumptech.glide.load.model.ModelLoaderFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Glide loader for http(s) images that shares one download between concurrent requests for the
+ * same URL.
+ *
+ * Glide's engine already merges requests for the same URL, size and transformation into one
+ * decode. Requests for the same URL at different sizes, e.g. a card, its prefetch and the
+ * details thumbnail, each fetched the image again. Here the first request downloads it and
+ * every request for the URL that arrives meanwhile decodes from the same bytes.
+ */
+public class CoalescingUrlLoader implements ModelLoader<GlideUrl, InputStream> {
+    private static final int BUFFER_SIZE = 16 * 1024;
+    // Longest a request holds one of Glide's few source threads waiting for another's download.
+    private static final long MAX_WAIT_MILLIS = 3000;
+
+    private static final Map<String, Download> sDownloads = new HashMap<String, Download>();
+    private static final AtomicLong sFetches = new AtomicLong();
+    private static final AtomicLong sCoalesced = new AtomicLong();
+
+    public static class Factory implements ModelLoaderFactory<GlideUrl, InputStream> {
+        @Override
+        public ModelLoader<GlideUrl, InputStream> build(Context context,
+                                                        GenericLoaderFactory factories) {
+            return new CoalescingUrlLoader();
+        }
+
+        @Override
+        public void teardown() {
+        }
+    }
+
+    @Override
+    public DataFetcher<InputStream> getResourceFetcher(GlideUrl model, int width, int height) {
+        return new CoalescingFetcher(model);
+    }
+
+    /**
+     * Returns how many downloads were made and how many requests shared one instead.
+     */
+    public static String getStats() {
+        return "network " + sFetches.get() + " fetches / " + sCoalesced.get() + " coalesced";
+    }
+
+    /*
+     * One download and the requests sharing it. Guarded by sDownloads.
+     */
+    private static final class Download {
+        final HttpUrlFetcher mFetcher;
+        // Requests that still want the result.
+        int mRequesters;
+        boolean mDone;
+        // Every request cancelled, so the fetch was cancelled too; not an error for anyone.
+        boolean mAborted;
+        byte[] mBytes;
+        Exception mError;
+
+        Download(GlideUrl url) {
+            mFetcher = new HttpUrlFetcher(url);
+        }
+    }
+
+    /*
+     * The first request for a URL runs the download on its own thread; later ones wait for it.
+     * A cancelled request stops waiting at once, but the download is only cancelled once every
+     * request sharing it has been cancelled. A request that still wants the image when that
+     * happens, e.g. one that joined just before, starts a new download. A request that has
+     * waited MAX_WAIT_MILLIS stops sharing and downloads the image itself, so a slow URL does
+     * not idle the threads other images need.
+     */
+    private static final class CoalescingFetcher implements DataFetcher<InputStream> {
+        private final GlideUrl mUrl;
+        private final String mKey;
+        private Download mDownload;
+        // Set once the request gave up waiting and downloads the image itself.
+        private HttpUrlFetcher mFetcher;
+        private boolean mCancelled;
+
+        CoalescingFetcher(GlideUrl url) {
+            mUrl = url;
+            mKey = url.toString();
+        }
+
+        @Override
+        public InputStream loadData(Priority priority) throws Exception {
+            HttpUrlFetcher abandoned;
+            while (true) {
+                Download download;
+                boolean first;
+                synchronized (sDownloads) {
+                    if (mCancelled) {
+                        return null;
+                    }
+                    download = sDownloads.get(mKey);
+                    first = download == null;
+                    if (first) {
+                        download = new Download(mUrl);
+                        sDownloads.put(mKey, download);
+                        sFetches.incrementAndGet();
+                    } else {
+                        sCoalesced.incrementAndGet();
+                    }
+                    download.mRequesters++;
+                    mDownload = download;
+                }
+                if (first) {
+                    run(download, priority);
+                }
+
+                synchronized (sDownloads) {
+                    try {
+                        long deadline = SystemClock.uptimeMillis() + MAX_WAIT_MILLIS;
+                        long remaining = MAX_WAIT_MILLIS;
+                        while (!download.mDone && !mCancelled && remaining > 0) {
+                            sDownloads.wait(remaining);
+                            remaining = deadline - SystemClock.uptimeMillis();
+                        }
+                    } catch (InterruptedException e) {
+                        cancel();
+                        throw e;
+                    }
+                    if (mCancelled) {
+                        return null;
+                    }
+                    if (download.mDone) {
+                        if (download.mAborted) {
+                            continue;
+                        }
+                        if (download.mError != null) {
+                            throw download.mError;
+                        }
+                        return new ByteArrayInputStream(download.mBytes);
+                    }
+                    // Waited long enough; the request that started it finishes it for the others.
+                    abandoned = leave(download);
+                    mFetcher = new HttpUrlFetcher(mUrl);
+                    sFetches.incrementAndGet();
+                }
+                if (abandoned != null) {
+                    abandoned.cancel();
+                }
+                return mFetcher.loadData(priority);
+            }
+        }
+
+        private void run(Download download, Priority priority) {
+            byte[] bytes = null;
+            Exception error = null;
+            try {
+                bytes = readFully(download.mFetcher.loadData(priority));
+            } catch (Exception e) {
+                error = e;
+            } finally {
+                download.mFetcher.cleanup();
+            }
+            synchronized (sDownloads) {
+                if (sDownloads.get(mKey) == download) {
+                    sDownloads.remove(mKey);
+                }
+                download.mBytes = bytes;
+                download.mError = error;
+                download.mDone = true;
+                sDownloads.notifyAll();
+            }
+        }
+
+        @Override
+        public void cleanup() {
+            if (mFetcher != null) {
+                mFetcher.cleanup();
+            }
+        }
+
+        @Override
+        public String getId() {
+            return mKey;
+        }
+
+        @Override
+        public void cancel() {
+            HttpUrlFetcher abandoned = null;
+            synchronized (sDownloads) {
+                if (mCancelled) {
+                    return;
+                }
+                mCancelled = true;
+                if (mFetcher != null) {
+                    abandoned = mFetcher;
+                } else if (mDownload != null) {
+                    abandoned = leave(mDownload);
+                }
+                // Wakes this request if it is waiting.
+                sDownloads.notifyAll();
+            }
+            if (abandoned != null) {
+                abandoned.cancel();
+            }
+        }
+
+        /*
+         * Stops sharing {@code download}. Returns its fetcher if this was the last request that
+         * wanted it, for the caller to cancel outside the lock. Called with sDownloads held.
+         */
+        private HttpUrlFetcher leave(Download download) {
+            mDownload = null;
+            if (download.mDone || --download.mRequesters > 0) {
+                return null;
+            }
+            download.mAborted = true;
+            // Requests arriving from now on start a download of their own.
+            if (sDownloads.get(mKey) == download) {
+                sDownloads.remove(mKey);
+            }
+            return download.mFetcher;
+        }
+
+        private static byte[] readFully(InputStream in) throws IOException {
+            if (in == null) {
+                throw new IOException("No data");
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+}
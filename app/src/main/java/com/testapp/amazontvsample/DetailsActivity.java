@@ -22,7 +22,7 @@ import android.os.Bundle;
  */
 public class DetailsActivity extends Activity {
     public static final String SHARED_ELEMENT_NAME = "hero";
-    public static final String MOVIE = "Movie";
+    public static final String MOVIE_ID = "MovieId";
 
     /**
      * Called when the activity is first created.
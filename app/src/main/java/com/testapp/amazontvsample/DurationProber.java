@@ -0,0 +1,235 @@
+package com.testapp.amazontvsample;
+
+import android.content.Context;
+import android.media.MediaMetadataRetriever;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+ * Finds out how long videos are without blocking the main thread.
+ *
+ * Probing a remote video with MediaMetadataRetriever costs a connection and a read of its
+ * header, so durations are kept in a file keyed by video URL and the ETag the server sent for
+ * it. A known duration is handed out right away. Once per process it is revalidated in the
+ * background with a HEAD request, and the video is only probed again if its ETag changed. If
+ * the HEAD request fails, e.g. offline, the known duration is kept.
+ */
+public final class DurationProber {
+    private static final String TAG = "DurationProber";
+
+    public interface Callback {
+        /**
+         * Called on the main thread with the duration of {@code videoUrl} once it was looked up.
+         */
+        void onDurationReady(String videoUrl, int durationMillis);
+    }
+
+    private static final String CACHE_FILE = "durations.cache";
+    private static final int FORMAT_VERSION = 1;
+    private static final int TIMEOUT_MILLIS = 5000;
+
+    private static DurationProber sInstance;
+
+    private final File mFile;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private final Map<String, Entry> mEntries = new ConcurrentHashMap<String, Entry>();
+
+    private static final class Entry {
+        final String mETag;
+        final int mDuration;
+        // Checked against the server since the process started.
+        volatile boolean mValidated;
+
+        Entry(String eTag, int duration, boolean validated) {
+            mETag = eTag;
+            mDuration = duration;
+            mValidated = validated;
+        }
+    }
+
+    public static synchronized DurationProber getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new DurationProber(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private DurationProber(Context context) {
+        mFile = new File(context.getFilesDir(), CACHE_FILE);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                read();
+            }
+        });
+    }
+
+    /**
+     * Returns the known duration of {@code videoUrl} in milliseconds, or -1. Unless it was
+     * already checked since the process started, the duration is also looked up in the
+     * background and handed to {@code callback}.
+     */
+    public int getDuration(final String videoUrl, final Callback callback) {
+        Entry entry = mEntries.get(videoUrl);
+        if (entry != null && entry.mValidated) {
+            return entry.mDuration;
+        }
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final int duration = probe(videoUrl);
+                if (duration >= 0) {
+                    mHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            callback.onDurationReady(videoUrl, duration);
+                        }
+                    });
+                }
+            }
+        });
+        return entry != null ? entry.mDuration : -1;
+    }
+
+    private int probe(String videoUrl) {
+        Entry entry = mEntries.get(videoUrl);
+        if (entry != null && entry.mValidated) {
+            // Probed by an earlier request while this one was queued.
+            return entry.mDuration;
+        }
+        String eTag = fetchETag(videoUrl);
+        if (entry != null && (eTag == null || eTag.equals(entry.mETag))) {
+            entry.mValidated = true;
+            return entry.mDuration;
+        }
+
+        int duration = extractDuration(videoUrl);
+        if (duration < 0) {
+            return -1;
+        }
+        mEntries.put(videoUrl, new Entry(eTag != null ? eTag : "", duration, true));
+        write();
+        return duration;
+    }
+
+    private static String fetchETag(String videoUrl) {
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL(videoUrl).openConnection();
+            connection.setRequestMethod("HEAD");
+            connection.setConnectTimeout(TIMEOUT_MILLIS);
+            connection.setReadTimeout(TIMEOUT_MILLIS);
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                return null;
+            }
+            String eTag = connection.getHeaderField("ETag");
+            return eTag != null ? eTag : connection.getHeaderField("Last-Modified");
+        } catch (IOException e) {
+            Log.w(TAG, "HEAD " + videoUrl + " failed", e);
+            return null;
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    private static int extractDuration(String videoUrl) {
+        MediaMetadataRetriever mmr = new MediaMetadataRetriever();
+        try {
+            mmr.setDataSource(videoUrl, new HashMap<String, String>());
+            String time = mmr.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION);
+            return time != null ? (int) Long.parseLong(time) : -1;
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Cannot probe " + videoUrl, e);
+            return -1;
+        } finally {
+            mmr.release();
+        }
+    }
+
+    private void read() {
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(mFile)));
+            if (in.readInt() != FORMAT_VERSION) {
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String videoUrl = in.readUTF();
+                String eTag = in.readUTF();
+                int duration = in.readInt();
+                if (!mEntries.containsKey(videoUrl)) {
+                    mEntries.put(videoUrl, new Entry(eTag, duration, false));
+                }
+            }
+        } catch (FileNotFoundException e) {
+            // Nothing probed yet.
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot read " + mFile, e);
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /*
+     * Written next to the cache file first and renamed into place, so a crash mid-write never
+     * leaves a half written cache behind.
+     */
+    private void write() {
+        File tmp = new File(mFile.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            Map<String, Entry> entries = new HashMap<String, Entry>(mEntries);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeUTF(entry.getValue().mETag);
+                out.writeInt(entry.getValue().mDuration);
+            }
+            out.close();
+            out = null;
+            if (!tmp.renameTo(mFile)) {
+                throw new IOException("Cannot rename " + tmp + " to " + mFile);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot write " + mFile, e);
+            tmp.delete();
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // Ignored.
+            }
+        }
+    }
+}
@@ -0,0 +1,363 @@
+package com.testapp.amazontvsample;
+
+import android.content.Context;
+import android.media.AudioManager;
+import android.media.MediaPlayer;
+import android.net.Uri;
+import android.os.Handler;
+import android.util.AttributeSet;
+import android.util.Log;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
+import android.widget.MediaController;
+
+import java.io.IOException;
+
+/*
+ * Video view that can prepare the next video while the current one plays, so that switching
+ * to it does not wait for a connection, prepare and initial buffering.
+ *
+ * prepareNext() opens the next video in a second MediaPlayer without a surface. When
+ * setVideoPath() asks for that video, the prepared player takes over the surface and plays
+ * right away; any other video is opened from scratch, like VideoView does. Like VideoView,
+ * start() and seekTo() before the video is prepared take effect once it is.
+ */
+public class GaplessVideoView extends SurfaceView implements MediaController.MediaPlayerControl {
+    private static final String TAG = "GaplessVideoView";
+
+    private final Handler mHandler = new Handler();
+    private SurfaceHolder mSurfaceHolder;
+    private Track mCurrent;
+    private Track mNext;
+    private boolean mStartWhenPrepared;
+    private int mSeekWhenPrepared;
+    private int mVideoWidth;
+    private int mVideoHeight;
+
+    private MediaPlayer.OnPreparedListener mOnPreparedListener;
+    private MediaPlayer.OnCompletionListener mOnCompletionListener;
+    private MediaPlayer.OnErrorListener mOnErrorListener;
+    private MediaPlayer.OnInfoListener mOnInfoListener;
+
+    private final SurfaceHolder.Callback mSurfaceCallback = new SurfaceHolder.Callback() {
+        @Override
+        public void surfaceCreated(SurfaceHolder holder) {
+            mSurfaceHolder = holder;
+            attachSurface();
+        }
+
+        @Override
+        public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+        }
+
+        @Override
+        public void surfaceDestroyed(SurfaceHolder holder) {
+            mSurfaceHolder = null;
+            if (mCurrent != null) {
+                mCurrent.mPlayer.setDisplay(null);
+            }
+        }
+    };
+
+    public GaplessVideoView(Context context) {
+        this(context, null);
+    }
+
+    public GaplessVideoView(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public GaplessVideoView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        getHolder().addCallback(mSurfaceCallback);
+    }
+
+    public void setOnPreparedListener(MediaPlayer.OnPreparedListener listener) {
+        mOnPreparedListener = listener;
+    }
+
+    public void setOnCompletionListener(MediaPlayer.OnCompletionListener listener) {
+        mOnCompletionListener = listener;
+    }
+
+    public void setOnErrorListener(MediaPlayer.OnErrorListener listener) {
+        mOnErrorListener = listener;
+    }
+
+    public void setOnInfoListener(MediaPlayer.OnInfoListener listener) {
+        mOnInfoListener = listener;
+    }
+
+    /**
+     * Plays {@code path} on the surface, with the player prepared by prepareNext() if it was
+     * prepared for the same path. Returns {@code false} if it cannot be opened, after reporting
+     * the error.
+     */
+    public boolean setVideoPath(String path) {
+        mStartWhenPrepared = false;
+        mSeekWhenPrepared = 0;
+        release(mCurrent);
+        if (mNext != null && mNext.mPath.equals(path)) {
+            mCurrent = mNext;
+            mNext = null;
+        } else {
+            mCurrent = open(path);
+        }
+        if (mCurrent == null) {
+            return false;
+        }
+        setVideoSize(mCurrent.mPlayer.getVideoWidth(), mCurrent.mPlayer.getVideoHeight());
+        attachSurface();
+        if (mCurrent.mPrepared) {
+            // Reported after the caller has set up, like a fresh prepare would be.
+            final Track track = mCurrent;
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (track == mCurrent) {
+                        onCurrentPrepared();
+                    }
+                }
+            });
+        }
+        return true;
+    }
+
+    /**
+     * Opens and prepares {@code path} in the background, to be played by a later
+     * setVideoPath() with the same path.
+     */
+    public void prepareNext(String path) {
+        if (mNext != null && mNext.mPath.equals(path)) {
+            return;
+        }
+        release(mNext);
+        mNext = null;
+        if (mCurrent != null && mCurrent.mPath.equals(path)) {
+            return;
+        }
+        mNext = open(path);
+    }
+
+    public void stopPlayback() {
+        mHandler.removeCallbacksAndMessages(null);
+        release(mCurrent);
+        release(mNext);
+        mCurrent = null;
+        mNext = null;
+        mStartWhenPrepared = false;
+    }
+
+    public void suspend() {
+        stopPlayback();
+    }
+
+    @Override
+    public void start() {
+        if (isPrepared()) {
+            mCurrent.mPlayer.start();
+        } else {
+            mStartWhenPrepared = true;
+        }
+    }
+
+    @Override
+    public void pause() {
+        if (isPrepared() && mCurrent.mPlayer.isPlaying()) {
+            mCurrent.mPlayer.pause();
+        }
+        mStartWhenPrepared = false;
+    }
+
+    @Override
+    public int getDuration() {
+        return isPrepared() ? mCurrent.mPlayer.getDuration() : -1;
+    }
+
+    @Override
+    public int getCurrentPosition() {
+        return isPrepared() ? mCurrent.mPlayer.getCurrentPosition() : mSeekWhenPrepared;
+    }
+
+    @Override
+    public void seekTo(int msec) {
+        if (isPrepared()) {
+            mCurrent.mPlayer.seekTo(msec);
+            mSeekWhenPrepared = 0;
+        } else {
+            mSeekWhenPrepared = msec;
+        }
+    }
+
+    @Override
+    public boolean isPlaying() {
+        return isPrepared() && mCurrent.mPlayer.isPlaying();
+    }
+
+    @Override
+    public int getBufferPercentage() {
+        return mCurrent != null ? mCurrent.mBufferPercentage : 0;
+    }
+
+    @Override
+    public boolean canPause() {
+        return true;
+    }
+
+    @Override
+    public boolean canSeekBackward() {
+        return true;
+    }
+
+    @Override
+    public boolean canSeekForward() {
+        return true;
+    }
+
+    @Override
+    public int getAudioSessionId() {
+        return mCurrent != null ? mCurrent.mPlayer.getAudioSessionId() : 0;
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int width = getDefaultSize(mVideoWidth, widthMeasureSpec);
+        int height = getDefaultSize(mVideoHeight, heightMeasureSpec);
+        if (mVideoWidth > 0 && mVideoHeight > 0) {
+            // Fit the video inside the view, keeping its aspect ratio.
+            if (mVideoWidth * height > width * mVideoHeight) {
+                height = width * mVideoHeight / mVideoWidth;
+            } else {
+                width = height * mVideoWidth / mVideoHeight;
+            }
+        }
+        setMeasuredDimension(width, height);
+    }
+
+    private boolean isPrepared() {
+        return mCurrent != null && mCurrent.mPrepared;
+    }
+
+    private void attachSurface() {
+        if (mCurrent != null && mSurfaceHolder != null) {
+            mCurrent.mPlayer.setDisplay(mSurfaceHolder);
+            mCurrent.mPlayer.setScreenOnWhilePlaying(true);
+        }
+    }
+
+    private void setVideoSize(int width, int height) {
+        mVideoWidth = width;
+        mVideoHeight = height;
+        if (width > 0 && height > 0) {
+            getHolder().setFixedSize(width, height);
+        }
+        requestLayout();
+    }
+
+    private void onCurrentPrepared() {
+        if (mOnPreparedListener != null) {
+            mOnPreparedListener.onPrepared(mCurrent.mPlayer);
+        }
+        if (mSeekWhenPrepared != 0) {
+            seekTo(mSeekWhenPrepared);
+        }
+        if (mStartWhenPrepared) {
+            mStartWhenPrepared = false;
+            mCurrent.mPlayer.start();
+        }
+    }
+
+    private Track open(String path) {
+        Track track = new Track(path);
+        try {
+            track.mPlayer.setDataSource(getContext(), Uri.parse(path));
+            track.mPlayer.prepareAsync();
+            return track;
+        } catch (IOException | IllegalArgumentException | IllegalStateException e) {
+            Log.w(TAG, "Cannot open " + path, e);
+            track.mPlayer.release();
+            if (mOnErrorListener != null) {
+                mOnErrorListener.onError(null, MediaPlayer.MEDIA_ERROR_UNKNOWN, 0);
+            }
+            return null;
+        }
+    }
+
+    private static void release(Track track) {
+        if (track != null) {
+            track.mPlayer.reset();
+            track.mPlayer.release();
+        }
+    }
+
+    /*
+     * A player and the video it plays. Its callbacks only reach the listeners while it is the
+     * current track; a standby track that fails is dropped quietly and opened again if it is
+     * played.
+     */
+    private final class Track implements MediaPlayer.OnPreparedListener,
+            MediaPlayer.OnCompletionListener, MediaPlayer.OnErrorListener,
+            MediaPlayer.OnBufferingUpdateListener, MediaPlayer.OnVideoSizeChangedListener,
+            MediaPlayer.OnInfoListener {
+        final String mPath;
+        final MediaPlayer mPlayer = new MediaPlayer();
+        boolean mPrepared;
+        int mBufferPercentage;
+
+        Track(String path) {
+            mPath = path;
+            mPlayer.setAudioStreamType(AudioManager.STREAM_MUSIC);
+            mPlayer.setOnPreparedListener(this);
+            mPlayer.setOnCompletionListener(this);
+            mPlayer.setOnErrorListener(this);
+            mPlayer.setOnBufferingUpdateListener(this);
+            mPlayer.setOnVideoSizeChangedListener(this);
+            mPlayer.setOnInfoListener(this);
+        }
+
+        @Override
+        public void onPrepared(MediaPlayer mp) {
+            mPrepared = true;
+            if (this == mCurrent) {
+                onCurrentPrepared();
+            }
+        }
+
+        @Override
+        public void onCompletion(MediaPlayer mp) {
+            if (this == mCurrent && mOnCompletionListener != null) {
+                mOnCompletionListener.onCompletion(mp);
+            }
+        }
+
+        @Override
+        public boolean onError(MediaPlayer mp, int what, int extra) {
+            Log.w(TAG, "Error " + what + "/" + extra + " playing " + mPath);
+            if (this == mNext) {
+                release(this);
+                mNext = null;
+            } else if (this == mCurrent && mOnErrorListener != null) {
+                mOnErrorListener.onError(mp, what, extra);
+            }
+            return true;
+        }
+
+        @Override
+        public boolean onInfo(MediaPlayer mp, int what, int extra) {
+            return this == mCurrent && mOnInfoListener != null
+                    && mOnInfoListener.onInfo(mp, what, extra);
+        }
+
+        @Override
+        public void onBufferingUpdate(MediaPlayer mp, int percent) {
+            mBufferPercentage = percent;
+        }
+
+        @Override
+        public void onVideoSizeChanged(MediaPlayer mp, int width, int height) {
+            if (this == mCurrent) {
+                setVideoSize(width, height);
+            }
+        }
+    }
+}
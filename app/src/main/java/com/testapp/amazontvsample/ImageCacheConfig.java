@@ -0,0 +1,135 @@
+package com.testapp.amazontvsample;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.util.DisplayMetrics;
+import android.util.Log;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.GlideBuilder;
+import com.bumptech.glide.load.Key;
+import com.bumptech.glide.load.engine.Resource;
+import com.bumptech.glide.load.engine.bitmap_recycle.LruBitmapPool;
+import com.bumptech.glide.load.engine.cache.DiskCache;
+import com.bumptech.glide.load.engine.cache.DiskLruCacheWrapper;
+import com.bumptech.glide.load.engine.cache.LruResourceCache;
+import com.bumptech.glide.load.model.GlideUrl;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Glide configuration for the app, sized for Fire TV devices.
+ *
+ * The memory cache is a share of the app's heap, smaller on low-RAM devices. The bitmap pool
+ * holds a few full-screen bitmaps, enough to swap browse and details backgrounds without
+ * allocating. Card and background art is kept in a disk cache larger than Glide's default.
+ * Glide's default decode format, RGB_565, is kept.
+ *
+ * Concurrent downloads of the same URL are shared, see CoalescingUrlLoader. Memory and disk
+ * cache hits and misses are counted, see getStats().
+ */
+public final class ImageCacheConfig {
+    private static final String TAG = "ImageCacheConfig";
+
+    private static final String DISK_CACHE_DIR = "image_cache";
+    private static final int DISK_CACHE_SIZE = 512 * 1024 * 1024;
+    private static final int LOW_RAM_DISK_CACHE_SIZE = 128 * 1024 * 1024;
+    private static final int MEMORY_CACHE_HEAP_DIVISOR = 8;
+    private static final int LOW_RAM_MEMORY_CACHE_HEAP_DIVISOR = 12;
+    private static final int POOLED_SCREENS = 3;
+    private static final int LOW_RAM_POOLED_SCREENS = 2;
+    private static final int BYTES_PER_PIXEL = 4;
+
+    private static final AtomicLong sMemoryHits = new AtomicLong();
+    private static final AtomicLong sMemoryMisses = new AtomicLong();
+    private static final AtomicLong sDiskHits = new AtomicLong();
+    private static final AtomicLong sDiskMisses = new AtomicLong();
+
+    private ImageCacheConfig() {
+    }
+
+    /**
+     * Configures Glide. Must run before the first Glide.with() or Glide.get() of the process.
+     */
+    public static void setup(Context context) {
+        if (Glide.isSetup()) {
+            return;
+        }
+        ActivityManager activityManager =
+                (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        boolean lowRam = activityManager.isLowRamDevice();
+        int heapSize = activityManager.getMemoryClass() * 1024 * 1024;
+
+        int memoryCacheSize = heapSize
+                / (lowRam ? LOW_RAM_MEMORY_CACHE_HEAP_DIVISOR : MEMORY_CACHE_HEAP_DIVISOR);
+        DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+        int screenSize = metrics.widthPixels * metrics.heightPixels * BYTES_PER_PIXEL;
+        int bitmapPoolSize = Math.min(heapSize / 4,
+                screenSize * (lowRam ? LOW_RAM_POOLED_SCREENS : POOLED_SCREENS));
+        int diskCacheSize = lowRam ? LOW_RAM_DISK_CACHE_SIZE : DISK_CACHE_SIZE;
+
+        Log.d(TAG, "memory cache " + memoryCacheSize + ", bitmap pool " + bitmapPoolSize
+                + ", disk cache " + diskCacheSize + (lowRam ? " (low RAM)" : ""));
+        File diskCacheDir = new File(context.getCacheDir(), DISK_CACHE_DIR);
+        Glide.setup(new GlideBuilder(context)
+                .setMemoryCache(new CountingMemoryCache(memoryCacheSize))
+                .setBitmapPool(new LruBitmapPool(bitmapPoolSize))
+                .setDiskCache(new CountingDiskCache(
+                        DiskLruCacheWrapper.get(diskCacheDir, diskCacheSize))));
+        Glide.get(context).register(GlideUrl.class, InputStream.class,
+                new CoalescingUrlLoader.Factory());
+    }
+
+    /**
+     * Returns the cache hit and miss counts since the process started.
+     */
+    public static String getStats() {
+        return "memory " + sMemoryHits.get() + " hits / " + sMemoryMisses.get() + " misses, "
+                + "disk " + sDiskHits.get() + " hits / " + sDiskMisses.get() + " misses, "
+                + CoalescingUrlLoader.getStats();
+    }
+
+    /*
+     * Glide's engine takes a resource out of the memory cache when it is used, so every
+     * remove() is a lookup.
+     */
+    private static final class CountingMemoryCache extends LruResourceCache {
+        CountingMemoryCache(int size) {
+            super(size);
+        }
+
+        @Override
+        public Resource<?> remove(Key key) {
+            Resource<?> resource = super.remove(key);
+            (resource != null ? sMemoryHits : sMemoryMisses).incrementAndGet();
+            return resource;
+        }
+    }
+
+    private static final class CountingDiskCache implements DiskCache {
+        private final DiskCache mCache;
+
+        CountingDiskCache(DiskCache cache) {
+            mCache = cache;
+        }
+
+        @Override
+        public File get(Key key) {
+            File file = mCache.get(key);
+            (file != null ? sDiskHits : sDiskMisses).incrementAndGet();
+            return file;
+        }
+
+        @Override
+        public void put(Key key, Writer writer) {
+            mCache.put(key, writer);
+        }
+
+        @Override
+        public void delete(Key key) {
+            mCache.delete(key);
+        }
+    }
+}
@@ -14,21 +14,22 @@
 
 package com.testapp.amazontvsample;
 
-import java.net.URI;
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.Map;
+import java.util.Set;
 
 import android.content.Intent;
+import android.graphics.Bitmap;
 import android.graphics.Color;
-import android.graphics.drawable.Drawable;
 import android.os.Bundle;
-import android.os.Handler;
 import android.support.v17.leanback.app.BackgroundManager;
 import android.support.v17.leanback.app.BrowseFragment;
 import android.support.v17.leanback.widget.ArrayObjectAdapter;
 import android.support.v17.leanback.widget.HeaderItem;
+import android.support.v17.leanback.widget.HorizontalGridView;
 import android.support.v17.leanback.widget.ImageCardView;
 import android.support.v17.leanback.widget.ListRow;
 import android.support.v17.leanback.widget.ListRowPresenter;
@@ -46,10 +47,11 @@ import android.view.ViewGroup;
 import android.widget.TextView;
 import android.widget.Toast;
 
-import com.bumptech.glide.Glide;
-import com.bumptech.glide.load.resource.drawable.GlideDrawable;
-import com.bumptech.glide.request.animation.GlideAnimation;
-import com.bumptech.glide.request.target.SimpleTarget;
+import com.testapp.catalog.CatalogDiff;
+import com.testapp.catalog.CatalogProvider;
+import com.testapp.catalog.CatalogRegistry;
+import com.testapp.catalog.CategoryIndex;
+import com.testapp.catalog.SearchIndex;
 
 public class MainFragment extends BrowseFragment {
     private static final String TAG = "MainFragment";
@@ -57,16 +59,25 @@ public class MainFragment extends BrowseFragment {
     private static final int BACKGROUND_UPDATE_DELAY = 300;
     private static final int GRID_ITEM_WIDTH = 200;
     private static final int GRID_ITEM_HEIGHT = 200;
-    private static final int NUM_ROWS = 6;
-    private static final int NUM_COLS = 15;
+    private static final int PAGE_SIZE = 20;
+    private static final int ROW_LOOKAHEAD = 2;
+    // Category rows are numbered from 0 as they are added, so this id stays clear of them.
+    private static final long PREFERENCES_HEADER_ID = Long.MAX_VALUE;
 
-    private final Handler mHandler = new Handler();
     private ArrayObjectAdapter mRowsAdapter;
-    private Drawable mDefaultBackground;
     private DisplayMetrics mMetrics;
-    private Timer mBackgroundTimer;
-    private URI mBackgroundURI;
+    private BackgroundUpdateScheduler mBackgroundScheduler;
+    private String mRequestedBackground;
     private BackgroundManager mBackgroundManager;
+    private CatalogProvider mCatalogProvider;
+    private CardPresenter mCardPresenter;
+    private CardPrefetcher mCardPrefetcher;
+    private CardImageScheduler mImageScheduler;
+    // The movie row holding the selection, for prefetching once the selection settles.
+    private HorizontalGridView mSelectedGridView;
+    private PagedObjectAdapter mSelectedRowAdapter;
+    private Map<String, MoviePageSource> mCategorySources;
+    private Map<String, PagedObjectAdapter> mCategoryRows;
 
     @Override
     public void onActivityCreated(Bundle savedInstanceState) {
@@ -82,35 +93,42 @@ public class MainFragment extends BrowseFragment {
         setupEventListeners();
     }
 
+    @Override
+    public void onStop() {
+        mCardPrefetcher.cancel();
+        mImageScheduler.clear();
+        Log.d(TAG, "Image caches: " + ImageCacheConfig.getStats());
+        super.onStop();
+    }
+
     @Override
     public void onDestroy() {
         super.onDestroy();
-        if (null != mBackgroundTimer) {
-            Log.d(TAG, "onDestroy: " + mBackgroundTimer.toString());
-            mBackgroundTimer.cancel();
+        if (null != mCatalogProvider) {
+            mCatalogProvider.cancel();
+        }
+        if (null != mBackgroundScheduler) {
+            mBackgroundScheduler.cancel();
         }
     }
 
     private void loadRows() {
-        List<Movie> list = MovieList.setupMovies();
-
         mRowsAdapter = new ArrayObjectAdapter(new ListRowPresenter());
-        CardPresenter cardPresenter = new CardPresenter();
-
-        int i;
-        for (i = 0; i < NUM_ROWS; i++) {
-            if (i != 0) {
-                Collections.shuffle(list);
-            }
-            ArrayObjectAdapter listRowAdapter = new ArrayObjectAdapter(cardPresenter);
-            for (int j = 0; j < NUM_COLS; j++) {
-                listRowAdapter.add(list.get(j % 5));
+        mImageScheduler = new CardImageScheduler(new CardImageScheduler.Listener() {
+            @Override
+            public void onResumed() {
+                if (mSelectedGridView != null) {
+                    mCardPrefetcher.onSelected(mSelectedGridView, mSelectedRowAdapter,
+                            mSelectedGridView.getSelectedPosition());
+                }
             }
-            HeaderItem header = new HeaderItem(i, MovieList.MOVIE_CATEGORY[i]);
-            mRowsAdapter.add(new ListRow(header, listRowAdapter));
-        }
+        });
+        mCardPresenter = new CardPresenter(mImageScheduler);
+        mCardPrefetcher = new CardPrefetcher(getActivity());
+        mCategorySources = new HashMap<String, MoviePageSource>();
+        mCategoryRows = new HashMap<String, PagedObjectAdapter>();
 
-        HeaderItem gridHeader = new HeaderItem(i, "PREFERENCES");
+        HeaderItem gridHeader = new HeaderItem(PREFERENCES_HEADER_ID, "PREFERENCES");
 
         GridItemPresenter mGridPresenter = new GridItemPresenter();
         ArrayObjectAdapter gridRowAdapter = new ArrayObjectAdapter(mGridPresenter);
@@ -120,15 +138,79 @@ public class MainFragment extends BrowseFragment {
         gridRowAdapter.add(getResources().getString(R.string.subscription));
         mRowsAdapter.add(new ListRow(gridHeader, gridRowAdapter));
 
+        // Headers go up right away, rows only get their cards once they come into view.
+        for (String category : MovieList.MOVIE_CATEGORY) {
+            addCategoryRow(category);
+        }
+        materializeRows(0);
+
         setAdapter(mRowsAdapter);
 
+        MovieList.setCatalog(new CategoryIndex());
+        MovieList.setSearchIndex(new SearchIndex());
+        mCatalogProvider = CatalogRegistry.createProvider(getActivity());
+        mCatalogProvider.load(new CatalogCallback());
+    }
+
+    /*
+     * Pages the movies of the batch into the rows of their categories. Categories missing from
+     * MovieList.MOVIE_CATEGORY get a row in front of the preferences row when they show up.
+     */
+    private void addToCategoryRows(List<Movie> batch) {
+        Set<String> grown = new LinkedHashSet<String>();
+        for (Movie movie : batch) {
+            grown.add(movie.getCategory());
+        }
+
+        for (String category : grown) {
+            MoviePageSource source = mCategorySources.get(category);
+            if (source == null) {
+                source = addCategoryRow(category);
+            }
+            if (source.isMaterialized()) {
+                mCategoryRows.get(category).onSourceGrew();
+            }
+        }
+    }
+
+    private MoviePageSource addCategoryRow(String category) {
+        MoviePageSource source = new MoviePageSource(category);
+        PagedObjectAdapter listRowAdapter = new PagedObjectAdapter(mCardPresenter, source,
+                PAGE_SIZE);
+        mCategorySources.put(category, source);
+        mCategoryRows.put(category, listRowAdapter);
+        HeaderItem header = new HeaderItem(mCategoryRows.size() - 1, category);
+        mRowsAdapter.add(mRowsAdapter.size() - 1, new ListRow(header, listRowAdapter));
+        return source;
+    }
+
+    /*
+     * Binds the cards of the row at the given index and of the ROW_LOOKAHEAD rows below it, if
+     * that has not happened yet.
+     */
+    private void materializeRows(int first) {
+        int last = Math.min(first + ROW_LOOKAHEAD, mRowsAdapter.size() - 1);
+        for (int i = first; i <= last; i++) {
+            String category = ((ListRow) mRowsAdapter.get(i)).getHeaderItem().getName();
+            MoviePageSource source = mCategorySources.get(category);
+            if (source != null && !source.isMaterialized()) {
+                source.setMaterialized();
+                mCategoryRows.get(category).onSourceGrew();
+            }
+        }
     }
 
     private void prepareBackgroundManager() {
+        mBackgroundScheduler = new BackgroundUpdateScheduler(BACKGROUND_UPDATE_DELAY,
+                new BackgroundUpdateScheduler.Listener() {
+                    @Override
+                    public void onUpdateBackground(String uri) {
+                        updateBackground(uri);
+                    }
+                });
 
         mBackgroundManager = BackgroundManager.getInstance(getActivity());
         mBackgroundManager.attach(getActivity().getWindow());
-        mDefaultBackground = getResources().getDrawable(R.drawable.default_background);
         mMetrics = new DisplayMetrics();
         getActivity().getWindowManager().getDefaultDisplay().getMetrics(mMetrics);
     }
@@ -152,8 +234,8 @@ public class MainFragment extends BrowseFragment {
 
             @Override
             public void onClick(View view) {
-                Toast.makeText(getActivity(), "Implement your own in-app search", Toast.LENGTH_LONG)
-                        .show();
+                Intent intent = new Intent(getActivity(), SearchActivity.class);
+                startActivity(intent);
             }
         });
 
@@ -162,29 +244,25 @@ public class MainFragment extends BrowseFragment {
     }
 
     protected void updateBackground(String uri) {
-        int width = mMetrics.widthPixels;
-        int height = mMetrics.heightPixels;
-        Glide.with(getActivity())
-                .load(uri)
-                .centerCrop()
-                .error(mDefaultBackground)
-                .into(new SimpleTarget<GlideDrawable>(width, height) {
+        mRequestedBackground = uri;
+        BackgroundArtCache.getInstance(getActivity()).load(uri, mMetrics.widthPixels,
+                mMetrics.heightPixels, BackgroundArtCache.Variant.PLAIN,
+                new BackgroundArtCache.Callback() {
                     @Override
-                    public void onResourceReady(GlideDrawable resource,
-                                                GlideAnimation<? super GlideDrawable>
-                                                        glideAnimation) {
-                        mBackgroundManager.setDrawable(resource);
+                    public void onBackgroundReady(String loadedUri, Bitmap bitmap) {
+                        if (isAdded() && loadedUri.equals(mRequestedBackground)) {
+                            mBackgroundManager.setBitmap(bitmap);
+                        }
                     }
-                });
-        mBackgroundTimer.cancel();
-    }
 
-    private void startBackgroundTimer() {
-        if (null != mBackgroundTimer) {
-            mBackgroundTimer.cancel();
-        }
-        mBackgroundTimer = new Timer();
-        mBackgroundTimer.schedule(new UpdateBackgroundTask(), BACKGROUND_UPDATE_DELAY);
+                    @Override
+                    public void onBackgroundFailed(String failedUri) {
+                        if (isAdded() && failedUri.equals(mRequestedBackground)) {
+                            mBackgroundManager.setDrawable(
+                                    getResources().getDrawable(R.drawable.default_background));
+                        }
+                    }
+                });
     }
 
     private final class ItemViewClickedListener implements OnItemViewClickedListener {
@@ -196,7 +274,7 @@ public class MainFragment extends BrowseFragment {
                 Movie movie = (Movie) item;
                 Log.d(TAG, "Item: " + item.toString());
                 Intent intent = new Intent(getActivity(), DetailsActivity.class);
-                intent.putExtra(DetailsActivity.MOVIE, movie);
+                intent.putExtra(DetailsActivity.MOVIE_ID, movie.getId());
 
                 Bundle bundle = ActivityOptionsCompat.makeSceneTransitionAnimation(
                         getActivity(),
@@ -221,27 +299,119 @@ public class MainFragment extends BrowseFragment {
         @Override
         public void onItemSelected(Presenter.ViewHolder itemViewHolder, Object item,
                                    RowPresenter.ViewHolder rowViewHolder, Row row) {
+            mImageScheduler.onSelectionMoved();
             if (item instanceof Movie) {
-                mBackgroundURI = ((Movie) item).getBackgroundImageURI();
-                startBackgroundTimer();
+                mBackgroundScheduler.schedule(((Movie) item).getBackgroundImageUrl());
+            }
+            // Also called with a null item when an empty row gets selected.
+            int rowIndex = mRowsAdapter.indexOf(row);
+            if (rowIndex >= 0) {
+                materializeRows(rowIndex);
+            }
+            if (row instanceof ListRow
+                    && ((ListRow) row).getAdapter() instanceof PagedObjectAdapter) {
+                HorizontalGridView gridView =
+                        ((ListRowPresenter.ViewHolder) rowViewHolder).getGridView();
+                PagedObjectAdapter adapter = (PagedObjectAdapter) ((ListRow) row).getAdapter();
+                int position = gridView.getSelectedPosition();
+                adapter.setSelectedPosition(position);
+                mSelectedGridView = gridView;
+                mSelectedRowAdapter = adapter;
+                // Prefetching while images are held back would only add decodes.
+                if (mImageScheduler.isPaused()) {
+                    mCardPrefetcher.cancel();
+                } else {
+                    mCardPrefetcher.onSelected(gridView, adapter, position);
+                }
+            } else {
+                mSelectedGridView = null;
+                mSelectedRowAdapter = null;
+                mCardPrefetcher.cancel();
             }
 
         }
     }
 
-    private class UpdateBackgroundTask extends TimerTask {
+    private final class CatalogCallback implements CatalogProvider.Callback {
+        @Override
+        public void onBatch(List<Movie> batch) {
+            MovieList.getCatalog().append(batch);
+            MovieList.getSearchIndex().add(batch);
+            addToCategoryRows(batch);
+        }
+
+        @Override
+        public void onComplete(List<Movie> catalog) {
+            Log.d(TAG, "Catalog loaded: " + catalog.size() + " movies");
+            CatalogRegistry.indexRelated(catalog);
+        }
 
         @Override
-        public void run() {
-            mHandler.post(new Runnable() {
+        public void onRefresh(final List<Movie> catalog) {
+            Log.d(TAG, "Catalog refreshed: " + catalog.size() + " movies");
+            List<CatalogDiff.Row> rows = new ArrayList<CatalogDiff.Row>();
+            for (Map.Entry<String, MoviePageSource> entry : mCategorySources.entrySet()) {
+                if (entry.getValue().isMaterialized()) {
+                    PagedObjectAdapter adapter = mCategoryRows.get(entry.getKey());
+                    rows.add(new CatalogDiff.Row(entry.getKey(), adapter.size(),
+                            adapter.getExposedLimit()));
+                }
+            }
+            CatalogDiff.compute(MovieList.getCatalog(), catalog, rows, new CatalogDiff.Callback() {
                 @Override
-                public void run() {
-                    if (mBackgroundURI != null) {
-                        updateBackground(mBackgroundURI.toString());
+                public void onDiffReady(CategoryIndex refreshed, List<CatalogDiff.Row> diffs) {
+                    MovieList.setCatalog(refreshed);
+                    SearchIndex searchIndex = new SearchIndex();
+                    searchIndex.add(catalog);
+                    MovieList.setSearchIndex(searchIndex);
+                    CatalogRegistry.indexRelated(catalog);
+                    if (!isAdded()) {
+                        return;
                     }
+                    for (CatalogDiff.Row row : diffs) {
+                        mCategoryRows.get(row.getCategory()).applyDiff(row.getResult(),
+                                row.getOldSize(), row.getNewSize());
+                    }
+                    addToCategoryRows(catalog);
                 }
             });
+        }
 
+        @Override
+        public void onError(Exception e) {
+            Toast.makeText(getActivity(), R.string.catalog_load_error, Toast.LENGTH_LONG)
+                    .show();
+        }
+    }
+
+    /*
+     * Movies of one category, read from the catalog's category index. Reports no items until
+     * the row has been materialized.
+     */
+    private static final class MoviePageSource implements PagedObjectAdapter.PageSource {
+        private final String mCategory;
+        private boolean mMaterialized;
+
+        MoviePageSource(String category) {
+            mCategory = category;
+        }
+
+        boolean isMaterialized() {
+            return mMaterialized;
+        }
+
+        void setMaterialized() {
+            mMaterialized = true;
+        }
+
+        @Override
+        public int getCount() {
+            return mMaterialized ? MovieList.getCatalog().size(mCategory) : 0;
+        }
+
+        @Override
+        public List<?> loadPage(int offset, int count) {
+            return MovieList.getCatalog().getMovies(mCategory, offset, count);
         }
     }
 
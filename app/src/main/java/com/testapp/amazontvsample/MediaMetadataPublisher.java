@@ -0,0 +1,126 @@
+package com.testapp.amazontvsample;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.drawable.Drawable;
+import android.media.MediaMetadata;
+import android.media.session.MediaSession;
+import android.util.LruCache;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.resource.drawable.GlideDrawable;
+import com.bumptech.glide.request.animation.GlideAnimation;
+import com.bumptech.glide.request.target.SimpleTarget;
+
+/*
+ * Publishes the metadata of the playing movie to a MediaSession.
+ *
+ * Metadata is only published when the movie changes, not on every play or pause. It is
+ * published right away without art, then again once the art is loaded. The art is the movie's
+ * card image at card size, so it usually comes from Glide's memory cache or disk cache instead
+ * of another download and decode. Built metadata is cached per movie, so going back to a movie
+ * with prev/next republishes it without loading anything.
+ */
+public class MediaMetadataPublisher {
+    private static final int CACHED_MOVIES = 8;
+
+    private final Context mContext;
+    private final MediaSession mSession;
+    private final LruCache<Long, MediaMetadata> mCache =
+            new LruCache<Long, MediaMetadata>(CACHED_MOVIES);
+    private long mPublishedId = -1;
+    private ArtTarget mArtTarget;
+
+    public MediaMetadataPublisher(Context context, MediaSession session) {
+        mContext = context.getApplicationContext();
+        mSession = session;
+    }
+
+    /**
+     * Publishes {@code movie} unless it is already the published movie.
+     */
+    public void publish(Movie movie) {
+        if (movie.getId() == mPublishedId) {
+            return;
+        }
+        mPublishedId = movie.getId();
+        cancelArt();
+
+        MediaMetadata metadata = mCache.get(movie.getId());
+        if (metadata != null) {
+            mSession.setMetadata(metadata);
+            return;
+        }
+        MediaMetadata.Builder builder = buildMetadata(movie);
+        mSession.setMetadata(builder.build());
+        if (movie.getCardImageUrl() != null) {
+            mArtTarget = new ArtTarget(movie.getId(), builder);
+            CardPresenter.loadCardImage(mContext, movie.getCardImageUrl(), mArtTarget);
+        }
+    }
+
+    /**
+     * Stops loading art, e.g. when the session is released.
+     */
+    public void cancel() {
+        cancelArt();
+        mPublishedId = -1;
+    }
+
+    private void cancelArt() {
+        if (mArtTarget != null) {
+            Glide.clear(mArtTarget);
+            mArtTarget = null;
+        }
+    }
+
+    private static MediaMetadata.Builder buildMetadata(Movie movie) {
+        MediaMetadata.Builder metadataBuilder = new MediaMetadata.Builder();
+
+        String title = movie.getTitle().replace("_", " -");
+
+        metadataBuilder.putString(MediaMetadata.METADATA_KEY_DISPLAY_TITLE, title);
+        metadataBuilder.putString(MediaMetadata.METADATA_KEY_DISPLAY_SUBTITLE,
+                movie.getDescription());
+        metadataBuilder.putString(MediaMetadata.METADATA_KEY_DISPLAY_ICON_URI,
+                movie.getCardImageUrl());
+
+        // And at minimum the title and artist for legacy support
+        metadataBuilder.putString(MediaMetadata.METADATA_KEY_TITLE, title);
+        metadataBuilder.putString(MediaMetadata.METADATA_KEY_ARTIST, movie.getStudio());
+        return metadataBuilder;
+    }
+
+    /*
+     * Copies the art out of the drawable: Glide may reuse the drawable's bitmap once the request
+     * is cleared with the next movie, while the cached metadata keeps its art.
+     */
+    private static Bitmap copyArt(Drawable drawable) {
+        Bitmap art = Bitmap.createBitmap(CardPresenter.CARD_WIDTH, CardPresenter.CARD_HEIGHT,
+                Bitmap.Config.RGB_565);
+        drawable.setBounds(0, 0, art.getWidth(), art.getHeight());
+        drawable.draw(new Canvas(art));
+        return art;
+    }
+
+    private final class ArtTarget extends SimpleTarget<GlideDrawable> {
+        private final long mMovieId;
+        private final MediaMetadata.Builder mBuilder;
+
+        ArtTarget(long movieId, MediaMetadata.Builder builder) {
+            super(CardPresenter.CARD_WIDTH, CardPresenter.CARD_HEIGHT);
+            mMovieId = movieId;
+            mBuilder = builder;
+        }
+
+        @Override
+        public void onResourceReady(GlideDrawable resource,
+                                    GlideAnimation<? super GlideDrawable> glideAnimation) {
+            mBuilder.putBitmap(MediaMetadata.METADATA_KEY_ART, copyArt(resource));
+            MediaMetadata metadata = mBuilder.build();
+            mCache.put(mMovieId, metadata);
+            mSession.setMetadata(metadata);
+        }
+    }
+}
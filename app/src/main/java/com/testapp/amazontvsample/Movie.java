@@ -14,6 +14,8 @@
 
 package com.testapp.amazontvsample;
 
+import android.os.Parcel;
+import android.os.Parcelable;
 import android.util.Log;
 
 import java.io.Serializable;
@@ -23,10 +25,27 @@ import java.net.URISyntaxException;
 /*
  * Movie class represents video entity with title, description, image thumbs and video url.
  *
+ * Movie is Parcelable; prefer it to Serializable when a movie crosses a process or saved-state
+ * boundary. The parcel form writes categories from MovieList.MOVIE_CATEGORY as their index.
  */
-public class Movie implements Serializable {
+public class Movie implements Serializable, Parcelable {
     static final long serialVersionUID = 727566175075960653L;
-    private static long count = 0;
+    private static final int CATEGORY_NOT_INTERNED = -1;
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    public static final Parcelable.Creator<Movie> CREATOR = new Parcelable.Creator<Movie>() {
+        @Override
+        public Movie createFromParcel(Parcel in) {
+            return new Movie(in);
+        }
+
+        @Override
+        public Movie[] newArray(int size) {
+            return new Movie[size];
+        }
+    };
+
     private long id;
     private String title;
     private String description;
@@ -35,16 +54,35 @@ public class Movie implements Serializable {
     private String videoUrl;
     private String studio;
     private String category;
+    // Parsed lazily from the URLs above and dropped when they change.
+    private transient URI bgImageURI;
+    private transient URI cardImageURI;
 
     public Movie() {
     }
 
-    public static long getCount() {
-        return count;
+    private Movie(Parcel in) {
+        id = in.readLong();
+        int categoryIndex = in.readInt();
+        category = categoryIndex == CATEGORY_NOT_INTERNED
+                ? in.readString() : MovieList.MOVIE_CATEGORY[categoryIndex];
+        title = in.readString();
+        description = in.readString();
+        studio = in.readString();
+        videoUrl = in.readString();
+        cardImageUrl = in.readString();
+        bgImageUrl = in.readString();
     }
 
-    public static void incCount() {
-        count++;
+    /**
+     * Returns the id of the movie with feed key {@code key} in {@code category}. The id only
+     * depends on its arguments, so it is the same across catalog loads and threads.
+     */
+    public static long stableId(String category, String key) {
+        long hash = hash(FNV_OFFSET_BASIS, category);
+        hash = hash(hash, key);
+        // Non-negative, so -1 stays free for "no movie".
+        return hash & Long.MAX_VALUE;
     }
 
     public long getId() {
@@ -93,6 +131,7 @@ public class Movie implements Serializable {
 
     public void setBackgroundImageUrl(String bgImageUrl) {
         this.bgImageUrl = bgImageUrl;
+        bgImageURI = null;
     }
 
     public String getCardImageUrl() {
@@ -101,6 +140,7 @@ public class Movie implements Serializable {
 
     public void setCardImageUrl(String cardImageUrl) {
         this.cardImageUrl = cardImageUrl;
+        cardImageURI = null;
     }
 
     public String getCategory() {
@@ -112,23 +152,92 @@ public class Movie implements Serializable {
     }
 
     public URI getBackgroundImageURI() {
-        try {
-            Log.d("BACK MOVIE: ", bgImageUrl);
-            return new URI(getBackgroundImageUrl());
-        } catch (URISyntaxException e) {
-            Log.d("URI exception: ", bgImageUrl);
-            return null;
+        if (bgImageURI == null) {
+            bgImageURI = parseUri(bgImageUrl);
         }
+        return bgImageURI;
     }
 
     public URI getCardImageURI() {
+        if (cardImageURI == null) {
+            cardImageURI = parseUri(cardImageUrl);
+        }
+        return cardImageURI;
+    }
+
+    private static URI parseUri(String url) {
+        if (url == null) {
+            return null;
+        }
         try {
-            return new URI(getCardImageUrl());
+            return new URI(url);
         } catch (URISyntaxException e) {
+            Log.d("URI exception: ", url);
             return null;
         }
     }
 
+    /**
+     * Returns a hash of every field but the id. Two loads of the same movie have the same hash
+     * unless something visible about it changed.
+     */
+    public long getContentHash() {
+        long hash = FNV_OFFSET_BASIS;
+        hash = hash(hash, category);
+        hash = hash(hash, title);
+        hash = hash(hash, description);
+        hash = hash(hash, studio);
+        hash = hash(hash, videoUrl);
+        hash = hash(hash, cardImageUrl);
+        hash = hash(hash, bgImageUrl);
+        return hash;
+    }
+
+    /*
+     * 64-bit FNV-1a over the chars of the string, followed by a separator so that ("ab", "c")
+     * and ("a", "bc") hash differently.
+     */
+    private static long hash(long hash, String value) {
+        if (value != null) {
+            for (int i = 0; i < value.length(); i++) {
+                hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+            }
+        }
+        return (hash ^ (value == null ? 0xffff : 0xfffe)) * FNV_PRIME;
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeLong(id);
+        int categoryIndex = categoryIndexOf(category);
+        dest.writeInt(categoryIndex);
+        if (categoryIndex == CATEGORY_NOT_INTERNED) {
+            dest.writeString(category);
+        }
+        dest.writeString(title);
+        dest.writeString(description);
+        dest.writeString(studio);
+        dest.writeString(videoUrl);
+        dest.writeString(cardImageUrl);
+        dest.writeString(bgImageUrl);
+    }
+
+    private static int categoryIndexOf(String category) {
+        if (category != null) {
+            for (int i = 0; i < MovieList.MOVIE_CATEGORY.length; i++) {
+                if (category.equals(MovieList.MOVIE_CATEGORY[i])) {
+                    return i;
+                }
+            }
+        }
+        return CATEGORY_NOT_INTERNED;
+    }
+
     @Override
     public String toString() {
         return "Movie{" +
@@ -136,7 +245,6 @@ public class Movie implements Serializable {
                 ", title='" + title + '\'' +
                 ", videoUrl='" + videoUrl + '\'' +
                 ", backgroundImageUrl='" + bgImageUrl + '\'' +
-                ", backgroundImageURI='" + getBackgroundImageURI().toString() + '\'' +
                 ", cardImageUrl='" + cardImageUrl + '\'' +
                 '}';
     }
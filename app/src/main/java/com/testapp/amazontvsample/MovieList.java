@@ -1,7 +1,8 @@
 package com.testapp.amazontvsample;
 
-import java.util.ArrayList;
-import java.util.List;
+import com.testapp.catalog.CategoryIndex;
+import com.testapp.catalog.RelatedIndex;
+import com.testapp.catalog.SearchIndex;
 
 public final class MovieList {
     public static final String MOVIE_CATEGORY[] = {
@@ -13,67 +14,63 @@ public final class MovieList {
             "Category Five",
     };
 
-    public static List<Movie> list;
+    /**
+     * Catalog feed bundled in assets, used when no remote feed is configured.
+     */
+    public static final String CATALOG_ASSET = "catalog.json";
 
-    public static List<Movie> setupMovies() {
-        list = new ArrayList<Movie>();
-        String title[] = {
-                "Zeitgeist 2010_ Year in Review",
-                "Google Demo Slam_ 20ft Search",
-                "Introducing Gmail Blue",
-                "Introducing Google Fiber to the Pole",
-                "Introducing Google Nose"
-        };
+    /**
+     * Binary snapshot of the last loaded catalog, kept in the app's files directory.
+     */
+    public static final String CATALOG_SNAPSHOT = "catalog.snapshot";
 
-        String description = "Fusce id nisi turpis. Praesent viverra bibendum semper. "
-                + "Donec tristique, orci sed semper lacinia, quam erat rhoncus massa, non congue tellus est "
-                + "quis tellus. Sed mollis orci venenatis quam scelerisque accumsan. Curabitur a massa sit "
-                + "amet mi accumsan mollis sed et magna. Vivamus sed aliquam risus. Nulla eget dolor in elit "
-                + "facilisis mattis. Ut aliquet luctus lacus. Phasellus nec commodo erat. Praesent tempus id "
-                + "lectus ac scelerisque. Maecenas pretium cursus lectus id volutpat.";
+    private static volatile CategoryIndex catalog = new CategoryIndex();
 
-        String videoUrl[] = {
-                "http://commondatastorage.googleapis.com/android-tv/Sample%20videos/Zeitgeist/Zeitgeist%202010_%20Year%20in%20Review.mp4",
-                "http://commondatastorage.googleapis.com/android-tv/Sample%20videos/Demo%20Slam/Google%20Demo%20Slam_%2020ft%20Search.mp4",
-                "http://commondatastorage.googleapis.com/android-tv/Sample%20videos/April%20Fool's%202013/Introducing%20Gmail%20Blue.mp4",
-                "http://commondatastorage.googleapis.com/android-tv/Sample%20videos/April%20Fool's%202013/Introducing%20Google%20Fiber%20to%20the%20Pole.mp4",
-                "http://commondatastorage.googleapis.com/android-tv/Sample%20videos/April%20Fool's%202013/Introducing%20Google%20Nose.mp4"
-        };
-        String bgImageUrl[] = {
-                "http://commondatastorage.googleapis.com/android-tv/Sample%20videos/Zeitgeist/Zeitgeist%202010_%20Year%20in%20Review/bg.jpg",
-                "http://commondatastorage.googleapis.com/android-tv/Sample%20videos/Demo%20Slam/Google%20Demo%20Slam_%2020ft%20Search/bg.jpg",
-                "http://commondatastorage.googleapis.com/android-tv/Sample%20videos/April%20Fool's%202013/Introducing%20Gmail%20Blue/bg.jpg",
-                "http://commondatastorage.googleapis.com/android-tv/Sample%20videos/April%20Fool's%202013/Introducing%20Google%20Fiber%20to%20the%20Pole/bg.jpg",
-                "http://commondatastorage.googleapis.com/android-tv/Sample%20videos/April%20Fool's%202013/Introducing%20Google%20Nose/bg.jpg",
-        };
-        String cardImageUrl[] = {
-                "http://commondatastorage.googleapis.com/android-tv/Sample%20videos/Zeitgeist/Zeitgeist%202010_%20Year%20in%20Review/card.jpg",
-                "http://commondatastorage.googleapis.com/android-tv/Sample%20videos/Demo%20Slam/Google%20Demo%20Slam_%2020ft%20Search/card.jpg",
-                "http://commondatastorage.googleapis.com/android-tv/Sample%20videos/April%20Fool's%202013/Introducing%20Gmail%20Blue/card.jpg",
-                "http://commondatastorage.googleapis.com/android-tv/Sample%20videos/April%20Fool's%202013/Introducing%20Google%20Fiber%20to%20the%20Pole/card.jpg",
-                "http://commondatastorage.googleapis.com/android-tv/Sample%20videos/April%20Fool's%202013/Introducing%20Google%20Nose/card.jpg"
-        };
+    /**
+     * Returns the catalog currently shown. Safe to read from any thread.
+     */
+    public static CategoryIndex getCatalog() {
+        return catalog;
+    }
+
+    public static void setCatalog(CategoryIndex newCatalog) {
+        catalog = newCatalog;
+    }
+
+    private static volatile SearchIndex searchIndex = new SearchIndex();
+
+    /**
+     * Returns the search index over the catalog, filled in the background as batches arrive.
+     */
+    public static SearchIndex getSearchIndex() {
+        return searchIndex;
+    }
 
-        list.add(buildMovieInfo("category", title[0],
-                description, "Studio Zero", videoUrl[0], cardImageUrl[0], bgImageUrl[0]));
-        list.add(buildMovieInfo("category", title[1],
-                description, "Studio One", videoUrl[1], cardImageUrl[1], bgImageUrl[1]));
-        list.add(buildMovieInfo("category", title[2],
-                description, "Studio Two", videoUrl[2], cardImageUrl[2], bgImageUrl[2]));
-        list.add(buildMovieInfo("category", title[3],
-                description, "Studio Three", videoUrl[3], cardImageUrl[3], bgImageUrl[3]));
-        list.add(buildMovieInfo("category", title[4],
-                description, "Studio Four", videoUrl[4], cardImageUrl[4], bgImageUrl[4]));
+    public static void setSearchIndex(SearchIndex newSearchIndex) {
+        searchIndex = newSearchIndex;
+    }
+
+    private static volatile RelatedIndex relatedIndex = RelatedIndex.EMPTY;
+
+    /**
+     * Returns the related titles of the catalog, empty until they have been computed.
+     */
+    public static RelatedIndex getRelatedIndex() {
+        return relatedIndex;
+    }
 
-        return list;
+    public static void setRelatedIndex(RelatedIndex newRelatedIndex) {
+        relatedIndex = newRelatedIndex;
     }
 
-    private static Movie buildMovieInfo(String category, String title,
-                                        String description, String studio, String videoUrl, String cardImageUrl,
-                                        String bgImageUrl) {
+    /**
+     * Builds a movie whose id is derived from its category and video URL, or its title if it has
+     * no video. See {@link Movie#stableId(String, String)}.
+     */
+    public static Movie buildMovieInfo(String category, String title,
+                                       String description, String studio, String videoUrl, String cardImageUrl,
+                                       String bgImageUrl) {
         Movie movie = new Movie();
-        movie.setId(Movie.getCount());
-        Movie.incCount();
         movie.setTitle(title);
         movie.setDescription(description);
         movie.setStudio(studio);
@@ -81,6 +78,14 @@ public final class MovieList {
         movie.setCardImageUrl(cardImageUrl);
         movie.setBackgroundImageUrl(bgImageUrl);
         movie.setVideoUrl(videoUrl);
+        movie.setId(Movie.stableId(category, feedKeyOf(movie)));
         return movie;
     }
+
+    /**
+     * Returns the key that identifies the movie within its category.
+     */
+    public static String feedKeyOf(Movie movie) {
+        return movie.getVideoUrl() != null ? movie.getVideoUrl() : movie.getTitle();
+    }
 }
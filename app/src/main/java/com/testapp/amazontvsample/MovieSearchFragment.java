@@ -0,0 +1,131 @@
+package com.testapp.amazontvsample;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.support.v17.leanback.app.SearchFragment;
+import android.support.v17.leanback.widget.ArrayObjectAdapter;
+import android.support.v17.leanback.widget.HeaderItem;
+import android.support.v17.leanback.widget.ImageCardView;
+import android.support.v17.leanback.widget.ListRow;
+import android.support.v17.leanback.widget.ListRowPresenter;
+import android.support.v17.leanback.widget.ObjectAdapter;
+import android.support.v17.leanback.widget.OnItemViewClickedListener;
+import android.support.v17.leanback.widget.Presenter;
+import android.support.v17.leanback.widget.Row;
+import android.support.v17.leanback.widget.RowPresenter;
+import android.support.v4.app.ActivityOptionsCompat;
+import android.text.TextUtils;
+
+import com.testapp.catalog.SearchIndex;
+
+import java.util.List;
+
+/*
+ * In-app search over the catalog. Results are refreshed on every keystroke from
+ * MovieList.getSearchIndex().
+ */
+public class MovieSearchFragment extends SearchFragment
+        implements SearchFragment.SearchResultProvider {
+    private static final int MAX_RESULTS = 50;
+
+    private ArrayObjectAdapter mRowsAdapter;
+    private ArrayObjectAdapter mResultsAdapter;
+    private ListRow mResultsRow;
+    // The index the last search went to; a catalog refresh replaces MovieList's.
+    private SearchIndex mSearchIndex;
+    private final SearchIndex.Callback mResultsCallback = new SearchIndex.Callback() {
+        @Override
+        public void onResults(String query, List<Movie> results) {
+            showResults(results);
+        }
+    };
+
+    @Override
+    public void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+
+        mRowsAdapter = new ArrayObjectAdapter(new ListRowPresenter());
+        mResultsAdapter = new ArrayObjectAdapter(new CardPresenter());
+        HeaderItem header = new HeaderItem(0, getString(R.string.search_results));
+        mResultsRow = new ListRow(header, mResultsAdapter);
+
+        setSearchResultProvider(this);
+        setOnItemViewClickedListener(new ItemViewClickedListener());
+    }
+
+    @Override
+    public void onStop() {
+        cancelSearches();
+        super.onStop();
+    }
+
+    @Override
+    public ObjectAdapter getResultsAdapter() {
+        return mRowsAdapter;
+    }
+
+    @Override
+    public boolean onQueryTextChange(String newQuery) {
+        search(newQuery);
+        return true;
+    }
+
+    @Override
+    public boolean onQueryTextSubmit(String query) {
+        search(query);
+        return true;
+    }
+
+    private void search(String query) {
+        SearchIndex index = MovieList.getSearchIndex();
+        if (TextUtils.isEmpty(query) || index != mSearchIndex) {
+            cancelSearches();
+        }
+        if (TextUtils.isEmpty(query)) {
+            mRowsAdapter.clear();
+            return;
+        }
+        mSearchIndex = index;
+        index.search(query, MAX_RESULTS, mResultsCallback);
+    }
+
+    /*
+     * Drops the searches still running on the index they were sent to, which may no longer be
+     * MovieList's.
+     */
+    private void cancelSearches() {
+        if (mSearchIndex != null) {
+            mSearchIndex.cancelSearches();
+            mSearchIndex = null;
+        }
+    }
+
+    private void showResults(List<Movie> results) {
+        mResultsAdapter.clear();
+        mResultsAdapter.addAll(0, results);
+        if (results.isEmpty()) {
+            mRowsAdapter.clear();
+        } else if (mRowsAdapter.size() == 0) {
+            mRowsAdapter.add(mResultsRow);
+        }
+    }
+
+    private final class ItemViewClickedListener implements OnItemViewClickedListener {
+        @Override
+        public void onItemClicked(Presenter.ViewHolder itemViewHolder, Object item,
+                                  RowPresenter.ViewHolder rowViewHolder, Row row) {
+
+            if (item instanceof Movie) {
+                Movie movie = (Movie) item;
+                Intent intent = new Intent(getActivity(), DetailsActivity.class);
+                intent.putExtra(DetailsActivity.MOVIE_ID, movie.getId());
+
+                Bundle bundle = ActivityOptionsCompat.makeSceneTransitionAnimation(
+                        getActivity(),
+                        ((ImageCardView) itemViewHolder.view).getMainImageView(),
+                        DetailsActivity.SHARED_ELEMENT_NAME).toBundle();
+                getActivity().startActivity(intent, bundle);
+            }
+        }
+    }
+}
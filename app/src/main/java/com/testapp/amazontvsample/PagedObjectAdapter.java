@@ -0,0 +1,197 @@
+package com.testapp.amazontvsample;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v17.leanback.widget.ObjectAdapter;
+import android.support.v17.leanback.widget.Presenter;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.util.ListUpdateCallback;
+import android.util.SparseArray;
+
+import java.util.List;
+
+/*
+ * ObjectAdapter that exposes a row in fixed-size pages.
+ *
+ * Only the first page is exposed up front. The next page is appended when the selection comes
+ * within half a page of the end, so a row never binds more cards than the user scrolled to.
+ * Items are inserted on the next pass of the main loop rather than from the selection or source
+ * callbacks, which can arrive while the row is being laid out.
+ */
+public class PagedObjectAdapter extends ObjectAdapter {
+
+    /*
+     * Backing data of a row.
+     */
+    public interface PageSource {
+        /**
+         * Returns the number of items currently available.
+         */
+        int getCount();
+
+        /**
+         * Returns {@code count} items starting at {@code offset}.
+         */
+        List<?> loadPage(int offset, int count);
+    }
+
+    private final PageSource mSource;
+    private final int mPageSize;
+    private final SparseArray<Object[]> mPages = new SparseArray<Object[]>();
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private int mSize;
+    private int mSelectedPosition;
+
+    private final Runnable mGrow = new Runnable() {
+        @Override
+        public void run() {
+            grow();
+        }
+    };
+
+    public PagedObjectAdapter(Presenter presenter, PageSource source, int pageSize) {
+        super(presenter);
+        mSource = source;
+        mPageSize = pageSize;
+        appendPage();
+    }
+
+    @Override
+    public int size() {
+        return mSize;
+    }
+
+    @Override
+    public Object get(int position) {
+        int page = position / mPageSize;
+        Object[] items = mPages.get(page);
+        if (items == null) {
+            items = loadPage(page);
+            mPages.put(page, items);
+        }
+        return items[position % mPageSize];
+    }
+
+    /**
+     * Tells the adapter which position is selected, so it can page in items ahead of the
+     * selection.
+     */
+    public void setSelectedPosition(int position) {
+        mSelectedPosition = position;
+        if (position + mPageSize / 2 >= mSize) {
+            scheduleGrow();
+        }
+    }
+
+    /**
+     * Called when the source has grown. Fills up the last exposed page; further pages are still
+     * only added as the selection approaches them.
+     */
+    public void onSourceGrew() {
+        scheduleGrow();
+    }
+
+    /**
+     * Drops every page and starts again from the first one, e.g. after the source was replaced.
+     */
+    public void reset() {
+        mHandler.removeCallbacks(mGrow);
+        mPages.clear();
+        mSize = 0;
+        mSelectedPosition = 0;
+        notifyChanged();
+        appendPage();
+    }
+
+    /**
+     * Returns how many items the pages exposed so far can hold. A diff of a replaced source
+     * should cover this many items so the row keeps its length.
+     */
+    public int getExposedLimit() {
+        int pages = Math.max(1, (mSize + mPageSize - 1) / mPageSize);
+        return pages * mPageSize;
+    }
+
+    /**
+     * Moves the row to a replaced source by notifying the changes in {@code diff} instead of
+     * rebinding the whole row. The diff must describe the first {@code oldSize} items going to
+     * the first {@code newSize} items of the source; if the row has paged in or out since
+     * {@code oldSize} was read, it is {@link #reset()} instead.
+     */
+    public void applyDiff(DiffUtil.DiffResult diff, int oldSize, int newSize) {
+        if (oldSize != mSize) {
+            reset();
+            return;
+        }
+        mPages.clear();
+        mSize = newSize;
+        diff.dispatchUpdatesTo(new ListUpdateCallback() {
+            @Override
+            public void onInserted(int position, int count) {
+                notifyItemRangeInserted(position, count);
+            }
+
+            @Override
+            public void onRemoved(int position, int count) {
+                notifyItemRangeRemoved(position, count);
+            }
+
+            @Override
+            public void onMoved(int fromPosition, int toPosition) {
+                notifyItemRangeRemoved(fromPosition, 1);
+                notifyItemRangeInserted(toPosition, 1);
+            }
+
+            @Override
+            public void onChanged(int position, int count, Object payload) {
+                notifyItemRangeChanged(position, count);
+            }
+        });
+        mSelectedPosition = Math.min(mSelectedPosition, Math.max(0, mSize - 1));
+    }
+
+    private void scheduleGrow() {
+        mHandler.removeCallbacks(mGrow);
+        mHandler.post(mGrow);
+    }
+
+    private void grow() {
+        if (mSize % mPageSize != 0) {
+            int lastPage = mSize / mPageSize;
+            int pageEnd = Math.min((lastPage + 1) * mPageSize, mSource.getCount());
+            if (pageEnd > mSize) {
+                int oldSize = mSize;
+                mPages.put(lastPage, loadPage(lastPage));
+                mSize = pageEnd;
+                notifyItemRangeInserted(oldSize, mSize - oldSize);
+            }
+        }
+        if (mSelectedPosition + mPageSize / 2 >= mSize) {
+            appendPage();
+        }
+    }
+
+    private void appendPage() {
+        int available = mSource.getCount();
+        if (mSize >= available || mSize % mPageSize != 0) {
+            return;
+        }
+        int page = mSize / mPageSize;
+        Object[] items = loadPage(page);
+        mPages.put(page, items);
+        int oldSize = mSize;
+        mSize = Math.min(mSize + mPageSize, available);
+        notifyItemRangeInserted(oldSize, mSize - oldSize);
+    }
+
+    private Object[] loadPage(int page) {
+        int offset = page * mPageSize;
+        int count = Math.max(0, Math.min(mPageSize, mSource.getCount() - offset));
+        Object[] items = new Object[mPageSize];
+        List<?> loaded = mSource.loadPage(offset, count);
+        for (int i = 0; i < loaded.size() && i < mPageSize; i++) {
+            items[i] = loaded.get(i);
+        }
+        return items;
+    }
+}
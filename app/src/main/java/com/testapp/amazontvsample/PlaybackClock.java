@@ -0,0 +1,102 @@
+package com.testapp.amazontvsample;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.widget.MediaController;
+
+/*
+ * Samples the position and buffered percentage of a player on the main thread while it plays.
+ *
+ * How often it samples depends on what can be seen: every visible tick period while the
+ * playback controls are shown, so the progress bar moves a pixel at a time, and about once a
+ * second while they are faded out. It does not wake up at all while stopped.
+ */
+public class PlaybackClock {
+    private static final long HIDDEN_TICK_PERIOD = 1000;
+    private static final long MIN_TICK_PERIOD = 16;
+
+    public interface Listener {
+        /**
+         * Returns the player to sample, or {@code null} while there is none.
+         */
+        MediaController.MediaPlayerControl getPlayer();
+
+        /**
+         * Called on the main thread with the player's position and buffered percentage.
+         */
+        void onTick(int positionMillis, int bufferPercentage);
+    }
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Listener mListener;
+    private long mVisibleTickPeriod = HIDDEN_TICK_PERIOD;
+    private boolean mControlsVisible = true;
+    private boolean mRunning;
+
+    private final Runnable mTick = new Runnable() {
+        @Override
+        public void run() {
+            sample();
+            mHandler.postDelayed(this, getTickPeriod());
+        }
+    };
+
+    public PlaybackClock(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Starts sampling.
+     */
+    public void start() {
+        if (!mRunning) {
+            mRunning = true;
+            mHandler.post(mTick);
+        }
+    }
+
+    /**
+     * Stops sampling after reporting the position it stopped at.
+     */
+    public void stop() {
+        if (mRunning) {
+            mRunning = false;
+            mHandler.removeCallbacks(mTick);
+            sample();
+        }
+    }
+
+    /**
+     * Sets how often to sample while the controls are shown, e.g. the time one pixel of the
+     * progress bar stands for.
+     */
+    public void setVisibleTickPeriod(long periodMillis) {
+        mVisibleTickPeriod = Math.max(MIN_TICK_PERIOD, periodMillis);
+        reschedule();
+    }
+
+    public void setControlsVisible(boolean visible) {
+        if (mControlsVisible != visible) {
+            mControlsVisible = visible;
+            reschedule();
+        }
+    }
+
+    private long getTickPeriod() {
+        return mControlsVisible ? mVisibleTickPeriod : HIDDEN_TICK_PERIOD;
+    }
+
+    private void reschedule() {
+        if (mRunning) {
+            mHandler.removeCallbacks(mTick);
+            mHandler.post(mTick);
+        }
+    }
+
+    private void sample() {
+        MediaController.MediaPlayerControl player = mListener.getPlayer();
+        if (player != null) {
+            mListener.onTick(player.getCurrentPosition(), player.getBufferPercentage());
+        }
+    }
+}
@@ -15,19 +15,15 @@
 package com.testapp.amazontvsample;
 
 import android.app.Activity;
-import android.graphics.Bitmap;
-import android.media.MediaMetadata;
 import android.media.MediaPlayer;
 import android.media.session.MediaSession;
 import android.media.session.PlaybackState;
-import android.net.Uri;
 import android.os.Bundle;
+import android.util.Log;
 import android.view.KeyEvent;
-import android.widget.VideoView;
+import android.widget.MediaController;
 
-import com.bumptech.glide.Glide;
-import com.bumptech.glide.request.animation.GlideAnimation;
-import com.bumptech.glide.request.target.SimpleTarget;
+import com.testapp.catalog.CatalogRegistry;
 
 /**
  * PlaybackOverlayActivity for video playback that loads PlaybackOverlayFragment
@@ -36,9 +32,13 @@ public class PlaybackOverlayActivity extends Activity implements
         PlaybackOverlayFragment.OnPlayPauseClickedListener {
     private static final String TAG = "PlaybackOverlayActivity";
 
-    private VideoView mVideoView;
+    private GaplessVideoView mVideoView;
     private LeanbackPlaybackState mPlaybackState = LeanbackPlaybackState.IDLE;
+    // Whether the user wants the video to play, whatever state the player is in.
+    private boolean mPlayWhenReady;
+    private String mVideoUrl;
     private MediaSession mSession;
+    private MediaMetadataPublisher mMetadataPublisher;
 
     /**
      * Called when the activity is first created.
@@ -46,6 +46,14 @@ public class PlaybackOverlayActivity extends Activity implements
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        // Checked before the controls are inflated, so no key reaches a fragment with nothing
+        // to play.
+        long movieId = getIntent().getLongExtra(DetailsActivity.MOVIE_ID, -1);
+        if (CatalogRegistry.getMovie(this, movieId) == null) {
+            Log.w(TAG, "Movie " + movieId + " is not in the catalog");
+            finish();
+            return;
+        }
         setContentView(R.layout.playback_controls);
         loadViews();
         setupCallbacks();
@@ -55,30 +63,35 @@ public class PlaybackOverlayActivity extends Activity implements
                 MediaSession.FLAG_HANDLES_TRANSPORT_CONTROLS);
 
         mSession.setActive(true);
+        mMetadataPublisher = new MediaMetadataPublisher(this, mSession);
     }
 
     @Override
     public void onDestroy() {
         super.onDestroy();
-        mVideoView.suspend();
+        if (mVideoView != null) {
+            mVideoView.suspend();
+        }
     }
 
     @Override
     public boolean onKeyUp(int keyCode, KeyEvent event) {
-        PlaybackOverlayFragment playbackOverlayFragment = (PlaybackOverlayFragment) getFragmentManager().findFragmentById(R.id.playback_controls_fragment);
+        PlaybackOverlayFragment playbackOverlayFragment = getPlaybackOverlayFragment();
         switch (keyCode) {
             case KeyEvent.KEYCODE_MEDIA_PLAY:
-                playbackOverlayFragment.togglePlayback(false);
+                playbackOverlayFragment.onMediaPlayPause(true);
                 return true;
             case KeyEvent.KEYCODE_MEDIA_PAUSE:
-                playbackOverlayFragment.togglePlayback(false);
+                playbackOverlayFragment.onMediaPlayPause(false);
                 return true;
             case KeyEvent.KEYCODE_MEDIA_PLAY_PAUSE:
-                if (mPlaybackState == LeanbackPlaybackState.PLAYING) {
-                    playbackOverlayFragment.togglePlayback(false);
-                } else {
-                    playbackOverlayFragment.togglePlayback(true);
-                }
+                playbackOverlayFragment.onMediaPlayPause(!mPlayWhenReady);
+                return true;
+            case KeyEvent.KEYCODE_MEDIA_FAST_FORWARD:
+                playbackOverlayFragment.fastForward();
+                return true;
+            case KeyEvent.KEYCODE_MEDIA_REWIND:
+                playbackOverlayFragment.rewind();
                 return true;
             default:
                 return super.onKeyUp(keyCode, event);
@@ -87,35 +100,84 @@ public class PlaybackOverlayActivity extends Activity implements
 
     /**
      * Implementation of OnPlayPauseClickedListener
+     * <p>
+     * The video is only opened again when the movie changes or the player has stopped. Pause and
+     * resume of the same movie keep the player and what it has buffered.
      */
     public void onFragmentPlayPause(Movie movie, int position, Boolean playPause) {
-        mVideoView.setVideoPath(movie.getVideoUrl());
-
-        if (position == 0 || mPlaybackState == LeanbackPlaybackState.IDLE) {
-            setupCallbacks();
-            mPlaybackState = LeanbackPlaybackState.IDLE;
-        }
-
-        if (playPause && mPlaybackState != LeanbackPlaybackState.PLAYING) {
-            mPlaybackState = LeanbackPlaybackState.PLAYING;
-            if (position > 0) {
-                mVideoView.seekTo(position);
+        mPlayWhenReady = playPause;
+        if (!movie.getVideoUrl().equals(mVideoUrl)
+                || mPlaybackState == LeanbackPlaybackState.IDLE) {
+            mVideoUrl = movie.getVideoUrl();
+            // A video that cannot be opened has already been stopped by the error listener.
+            if (mVideoView.setVideoPath(mVideoUrl)) {
+                if (position > 0) {
+                    mVideoView.seekTo(position);
+                }
+                mPlaybackState = LeanbackPlaybackState.PREPARING;
+            }
+        } else if (playPause) {
+            if (mPlaybackState == LeanbackPlaybackState.PREPARED
+                    || mPlaybackState == LeanbackPlaybackState.PAUSED) {
                 mVideoView.start();
+                mPlaybackState = LeanbackPlaybackState.PLAYING;
             }
         } else {
-            mPlaybackState = LeanbackPlaybackState.PAUSED;
             mVideoView.pause();
+            if (mPlaybackState == LeanbackPlaybackState.PLAYING
+                    || mPlaybackState == LeanbackPlaybackState.BUFFERING) {
+                mPlaybackState = LeanbackPlaybackState.PAUSED;
+            }
         }
         updatePlaybackState(position);
-        updateMetadata(movie);
+        mMetadataPublisher.publish(movie);
+    }
+
+    @Override
+    public void onFragmentPrepareNext(Movie movie) {
+        mVideoView.prepareNext(movie.getVideoUrl());
+    }
+
+    @Override
+    public void onFragmentSeekTo(int position) {
+        mVideoView.seekTo(position);
+        updatePlaybackState(position);
+    }
+
+    @Override
+    public MediaController.MediaPlayerControl getPlayerControl() {
+        return mVideoView;
+    }
+
+    private PlaybackOverlayFragment getPlaybackOverlayFragment() {
+        return (PlaybackOverlayFragment) getFragmentManager()
+                .findFragmentById(R.id.playback_controls_fragment);
+    }
+
+    private void setPlaybackState(LeanbackPlaybackState playbackState) {
+        mPlaybackState = playbackState;
+        updatePlaybackState(mVideoView.getCurrentPosition());
     }
 
     private void updatePlaybackState(int position) {
         PlaybackState.Builder stateBuilder = new PlaybackState.Builder()
                 .setActions(getAvailableActions());
-        int state = PlaybackState.STATE_PLAYING;
-        if (mPlaybackState == LeanbackPlaybackState.PAUSED) {
-            state = PlaybackState.STATE_PAUSED;
+        int state;
+        switch (mPlaybackState) {
+            case PREPARING:
+            case BUFFERING:
+                state = PlaybackState.STATE_BUFFERING;
+                break;
+            case PREPARED:
+            case PAUSED:
+                state = PlaybackState.STATE_PAUSED;
+                break;
+            case PLAYING:
+                state = PlaybackState.STATE_PLAYING;
+                break;
+            default:
+                state = PlaybackState.STATE_STOPPED;
+                break;
         }
         stateBuilder.setState(state, position, 1.0f);
         mSession.setPlaybackState(stateBuilder.build());
@@ -126,42 +188,15 @@ public class PlaybackOverlayActivity extends Activity implements
                 PlaybackState.ACTION_PLAY_FROM_MEDIA_ID |
                 PlaybackState.ACTION_PLAY_FROM_SEARCH;
 
-        if (mPlaybackState == LeanbackPlaybackState.PLAYING) {
+        if (mPlayWhenReady) {
             actions |= PlaybackState.ACTION_PAUSE;
         }
 
         return actions;
     }
 
-    private void updateMetadata(final Movie movie) {
-        final MediaMetadata.Builder metadataBuilder = new MediaMetadata.Builder();
-
-        String title = movie.getTitle().replace("_", " -");
-
-        metadataBuilder.putString(MediaMetadata.METADATA_KEY_DISPLAY_TITLE, title);
-        metadataBuilder.putString(MediaMetadata.METADATA_KEY_DISPLAY_SUBTITLE,
-                movie.getDescription());
-        metadataBuilder.putString(MediaMetadata.METADATA_KEY_DISPLAY_ICON_URI,
-                movie.getCardImageUrl());
-
-        // And at minimum the title and artist for legacy support
-        metadataBuilder.putString(MediaMetadata.METADATA_KEY_TITLE, title);
-        metadataBuilder.putString(MediaMetadata.METADATA_KEY_ARTIST, movie.getStudio());
-
-        Glide.with(this)
-                .load(Uri.parse(movie.getCardImageUrl()))
-                .asBitmap()
-                .into(new SimpleTarget<Bitmap>(500, 500) {
-                    @Override
-                    public void onResourceReady(Bitmap bitmap, GlideAnimation anim) {
-                        metadataBuilder.putBitmap(MediaMetadata.METADATA_KEY_ART, bitmap);
-                        mSession.setMetadata(metadataBuilder.build());
-                    }
-                });
-    }
-
     private void loadViews() {
-        mVideoView = (VideoView) findViewById(R.id.videoView);
+        mVideoView = (GaplessVideoView) findViewById(R.id.videoView);
         mVideoView.setFocusable(false);
         mVideoView.setFocusableInTouchMode(false);
     }
@@ -180,8 +215,7 @@ public class PlaybackOverlayActivity extends Activity implements
                 } else {
                     msg = getString(R.string.video_error_unknown_error);
                 }
-                mVideoView.stopPlayback();
-                mPlaybackState = LeanbackPlaybackState.IDLE;
+                stopPlayback();
                 return false;
             }
         });
@@ -189,16 +223,34 @@ public class PlaybackOverlayActivity extends Activity implements
         mVideoView.setOnPreparedListener(new MediaPlayer.OnPreparedListener() {
             @Override
             public void onPrepared(MediaPlayer mp) {
-                if (mPlaybackState == LeanbackPlaybackState.PLAYING) {
+                if (mPlayWhenReady) {
                     mVideoView.start();
+                    setPlaybackState(LeanbackPlaybackState.PLAYING);
+                } else {
+                    setPlaybackState(LeanbackPlaybackState.PREPARED);
+                }
+            }
+        });
+
+        mVideoView.setOnInfoListener(new MediaPlayer.OnInfoListener() {
+            @Override
+            public boolean onInfo(MediaPlayer mp, int what, int extra) {
+                if (what == MediaPlayer.MEDIA_INFO_BUFFERING_START
+                        && mPlaybackState == LeanbackPlaybackState.PLAYING) {
+                    setPlaybackState(LeanbackPlaybackState.BUFFERING);
+                } else if (what == MediaPlayer.MEDIA_INFO_BUFFERING_END
+                        && mPlaybackState == LeanbackPlaybackState.BUFFERING) {
+                    setPlaybackState(LeanbackPlaybackState.PLAYING);
                 }
+                return false;
             }
         });
 
         mVideoView.setOnCompletionListener(new MediaPlayer.OnCompletionListener() {
             @Override
             public void onCompletion(MediaPlayer mp) {
-                mPlaybackState = LeanbackPlaybackState.IDLE;
+                setPlaybackState(LeanbackPlaybackState.IDLE);
+                getPlaybackOverlayFragment().onPlaybackCompleted();
             }
         });
 
@@ -226,6 +278,7 @@ public class PlaybackOverlayActivity extends Activity implements
     @Override
     protected void onStop() {
         super.onStop();
+        mMetadataPublisher.cancel();
         mSession.release();
     }
 
@@ -238,6 +291,9 @@ public class PlaybackOverlayActivity extends Activity implements
     private void stopPlayback() {
         if (mVideoView != null) {
             mVideoView.stopPlayback();
+            // The players are gone, so the next play opens the video again where it was left.
+            mVideoUrl = null;
+            setPlaybackState(LeanbackPlaybackState.IDLE);
         }
     }
 
@@ -245,7 +301,7 @@ public class PlaybackOverlayActivity extends Activity implements
      * List of various states that we can be in
      */
     public enum LeanbackPlaybackState {
-        PLAYING, PAUSED, BUFFERING, IDLE
+        PREPARING, PREPARED, PLAYING, PAUSED, BUFFERING, IDLE
     }
 
     private class MediaSessionCallback extends MediaSession.Callback {
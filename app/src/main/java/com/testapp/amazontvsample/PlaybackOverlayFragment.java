@@ -16,8 +16,6 @@ package com.testapp.amazontvsample;
 
 import android.app.Activity;
 
-import android.media.MediaMetadataRetriever;
-import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
 import android.support.v17.leanback.widget.AbstractDetailsDescriptionPresenter;
@@ -30,7 +28,6 @@ import android.support.v17.leanback.widget.ListRow;
 import android.support.v17.leanback.widget.ListRowPresenter;
 import android.support.v17.leanback.widget.OnActionClickedListener;
 import android.support.v17.leanback.widget.OnItemViewClickedListener;
-import android.support.v17.leanback.widget.OnItemViewSelectedListener;
 import android.support.v17.leanback.widget.PlaybackControlsRow;
 import android.support.v17.leanback.widget.PlaybackControlsRow.FastForwardAction;
 import android.support.v17.leanback.widget.PlaybackControlsRow.PlayPauseAction;
@@ -46,16 +43,18 @@ import android.support.v17.leanback.widget.Presenter;
 import android.support.v17.leanback.widget.Row;
 import android.support.v17.leanback.widget.RowPresenter;
 import android.util.Log;
-import android.widget.Toast;
+import android.widget.MediaController;
 
 import com.bumptech.glide.Glide;
 import com.bumptech.glide.load.resource.drawable.GlideDrawable;
 import com.bumptech.glide.request.animation.GlideAnimation;
 import com.bumptech.glide.request.target.SimpleTarget;
+import com.testapp.catalog.CatalogRegistry;
+import com.testapp.catalog.CategoryIndex;
+import com.testapp.catalog.RelatedIndex;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.util.Arrays;
 
 /*
  * Class for video playback with media control
@@ -71,8 +70,10 @@ public class PlaybackOverlayFragment extends android.support.v17.leanback.app.Pl
     private static final int CARD_WIDTH = 200;
     private static final int CARD_HEIGHT = 240;
     private static final int DEFAULT_UPDATE_PERIOD = 1000;
-    private static final int UPDATE_PERIOD = 16;
-    private static final int SIMULATED_BUFFERED_TIME = 10000;
+    private static final int PREPARE_NEXT_AHEAD = 20000;
+    // Trick play speeds, as multiples of real time, and how often the position moves.
+    private static final int[] TRICK_SPEEDS = {2, 4, 8, 16, 32};
+    private static final int TRICK_TICK = 200;
 
     private ArrayObjectAdapter mRowsAdapter;
     private ArrayObjectAdapter mPrimaryActionsAdapter;
@@ -89,43 +90,113 @@ public class PlaybackOverlayFragment extends android.support.v17.leanback.app.Pl
     private PlaybackControlsRow mPlaybackControlsRow;
     private ArrayList<Movie> mItems = new ArrayList<Movie>();
     private int mCurrentItem;
-    private Handler mHandler;
-    private Runnable mRunnable;
+    private PlaybackClock mClock;
+    private boolean mNextPrepared;
+    private final Handler mTrickHandler = new Handler();
+    // Signed, negative while rewinding; 0 while not in trick play.
+    private int mTrickSpeed;
+    private int mTrickPosition;
+    private boolean mResumeAfterTrick;
+    private SeekThumbnailIndex mSeekThumbnails;
+    private SeekThumbnailIndex.FrameDrawable mSeekPreview;
+    private ResumePositionStore mResumePositions;
     private Movie mSelectedMovie;
 
     private OnPlayPauseClickedListener mCallback;
 
+    private final DurationProber.Callback mDurationCallback = new DurationProber.Callback() {
+        @Override
+        public void onDurationReady(String videoUrl, int durationMillis) {
+            if (isAdded() && videoUrl.equals(mItems.get(mCurrentItem).getVideoUrl())) {
+                mPlaybackControlsRow.setTotalTime(durationMillis);
+                mClock.setVisibleTickPeriod(getUpdatePeriod());
+                mRowsAdapter.notifyArrayItemRangeChanged(0, 1);
+                loadSeekThumbnails(durationMillis);
+            }
+        }
+    };
+
+    private final SeekThumbnailIndex.Callback mSeekThumbnailCallback =
+            new SeekThumbnailIndex.Callback() {
+                @Override
+                public void onIndexReady(String videoUrl, SeekThumbnailIndex index) {
+                    if (isAdded() && videoUrl.equals(mItems.get(mCurrentItem).getVideoUrl())) {
+                        mSeekThumbnails = index;
+                    }
+                }
+            };
+
+    private final Runnable mTrickTick = new Runnable() {
+        @Override
+        public void run() {
+            stepTrickPlay();
+        }
+    };
+
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
         mItems = new ArrayList<Movie>();
-        mSelectedMovie = (Movie) getActivity()
-                .getIntent().getSerializableExtra(DetailsActivity.MOVIE);
+        long movieId = getActivity().getIntent().getLongExtra(DetailsActivity.MOVIE_ID, -1);
+        mSelectedMovie = CatalogRegistry.getMovie(getActivity(), movieId);
+        if (mSelectedMovie == null) {
+            Log.w(TAG, "Movie " + movieId + " is not in the catalog");
+            getActivity().finish();
+            return;
+        }
 
-        List<Movie> movies = MovieList.list;
+        CategoryIndex movies = MovieList.getCatalog();
 
         for (int j = 0; j < movies.size(); j++) {
             mItems.add(movies.get(j));
-            if (mSelectedMovie.getTitle().contentEquals(movies.get(j).getTitle())) {
+            if (movies.get(j).getId() == mSelectedMovie.getId()) {
                 mCurrentItem = j;
             }
         }
 
-        mHandler = new Handler();
+        mResumePositions = ResumePositionStore.getInstance(getActivity());
+        // Asks for the player on every tick: the video view is only created after this fragment.
+        mClock = new PlaybackClock(new PlaybackClock.Listener() {
+            @Override
+            public MediaController.MediaPlayerControl getPlayer() {
+                return mCallback.getPlayerControl();
+            }
+
+            @Override
+            public void onTick(int positionMillis, int bufferPercentage) {
+                if (mCallback.getPlayerControl().isPlaying()) {
+                    mResumePositions.setPosition(mItems.get(mCurrentItem).getVideoUrl(),
+                            positionMillis);
+                }
+                int totalTime = mPlaybackControlsRow.getTotalTime();
+                mPlaybackControlsRow.setCurrentTime(positionMillis);
+                mPlaybackControlsRow.setBufferedProgress(totalTime * bufferPercentage / 100);
+                if (!mNextPrepared && totalTime > 0
+                        && totalTime - positionMillis <= PREPARE_NEXT_AHEAD) {
+                    // Near the end: let the next video connect and buffer while this one ends.
+                    mNextPrepared = true;
+                    mCallback.onFragmentPrepareNext(mItems.get(nextIndex()));
+                }
+            }
+        });
 
         setBackgroundType(BACKGROUND_TYPE);
         setFadingEnabled(false);
+        setFadeCompleteListener(new OnFadeCompleteListener() {
+            @Override
+            public void onFadeInComplete() {
+                mClock.setControlsVisible(true);
+            }
 
-        setupRows();
-
-        setOnItemViewSelectedListener(new OnItemViewSelectedListener() {
             @Override
-            public void onItemSelected(Presenter.ViewHolder itemViewHolder, Object item,
-                                       RowPresenter.ViewHolder rowViewHolder, Row row) {
-                Log.i(TAG, "onItemSelected: " + item + " row " + row);
+            public void onFadeOutComplete() {
+                mClock.setControlsVisible(false);
             }
         });
+
+        setupRows();
+
         setOnItemViewClickedListener(new OnItemViewClickedListener() {
             @Override
             public void onItemClicked(Presenter.ViewHolder itemViewHolder, Object item,
@@ -160,16 +231,29 @@ public class PlaybackOverlayFragment extends android.support.v17.leanback.app.Pl
         }
         playbackControlsRowPresenter.setOnActionClickedListener(new OnActionClickedListener() {
             public void onActionClicked(Action action) {
+                if (action.getId() == mFastForwardAction.getId()) {
+                    changeTrickSpeed(1);
+                    return;
+                } else if (action.getId() == mRewindAction.getId()) {
+                    changeTrickSpeed(-1);
+                    return;
+                } else if (mTrickSpeed != 0) {
+                    if (action.getId() == mPlayPauseAction.getId()) {
+                        endTrickPlay(true, true);
+                        return;
+                    } else if (action.getId() == mSkipNextAction.getId()
+                            || action.getId() == mSkipPreviousAction.getId()) {
+                        endTrickPlay(false, false);
+                    } else {
+                        endTrickPlay(true, mResumeAfterTrick);
+                    }
+                }
                 if (action.getId() == mPlayPauseAction.getId()) {
                     togglePlayback(mPlayPauseAction.getIndex() == PlayPauseAction.PLAY);
                 } else if (action.getId() == mSkipNextAction.getId()) {
                     next();
                 } else if (action.getId() == mSkipPreviousAction.getId()) {
                     prev();
-                } else if (action.getId() == mFastForwardAction.getId()) {
-                    Toast.makeText(getActivity(), "TODO: Fast Forward", Toast.LENGTH_SHORT).show();
-                } else if (action.getId() == mRewindAction.getId()) {
-                    Toast.makeText(getActivity(), "TODO: Rewind", Toast.LENGTH_SHORT).show();
                 }
                 if (action instanceof PlaybackControlsRow.MultiAction) {
                     ((PlaybackControlsRow.MultiAction) action).nextIndex();
@@ -191,13 +275,14 @@ public class PlaybackOverlayFragment extends android.support.v17.leanback.app.Pl
 
     public void togglePlayback(boolean playPause) {
         if (playPause) {
-            startProgressAutomation();
+            mClock.setVisibleTickPeriod(getUpdatePeriod());
+            mClock.start();
             setFadingEnabled(true);
             mCallback.onFragmentPlayPause(mItems.get(mCurrentItem),
                     mPlaybackControlsRow.getCurrentTime(), true);
             mPlayPauseAction.setIcon(mPlayPauseAction.getDrawable(PlayPauseAction.PAUSE));
         } else {
-            stopProgressAutomation();
+            mClock.stop();
             setFadingEnabled(false);
             mCallback.onFragmentPlayPause(mItems.get(mCurrentItem),
                     mPlaybackControlsRow.getCurrentTime(), false);
@@ -206,22 +291,38 @@ public class PlaybackOverlayFragment extends android.support.v17.leanback.app.Pl
         notifyChanged(mPlayPauseAction);
     }
 
-    private int getDuration() {
-        Movie movie = mItems.get(mCurrentItem);
-        MediaMetadataRetriever mmr = new MediaMetadataRetriever();
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
-            mmr.setDataSource(movie.getVideoUrl(), new HashMap<String, String>());
+    /**
+     * Plays or pauses for a media key. Trick play ends first, at the position it got to.
+     */
+    public void onMediaPlayPause(boolean playPause) {
+        if (mTrickSpeed != 0) {
+            endTrickPlay(true, playPause);
         } else {
-            mmr.setDataSource(movie.getVideoUrl());
+            mPlayPauseAction.setIndex(playPause ? PlayPauseAction.PAUSE : PlayPauseAction.PLAY);
+            togglePlayback(playPause);
         }
-        String time = mmr.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION);
-        long duration = Long.parseLong(time);
-        return (int) duration;
+    }
+
+    /**
+     * Starts fast forward for a media key, or speeds it up.
+     */
+    public void fastForward() {
+        changeTrickSpeed(1);
+    }
+
+    /**
+     * Starts rewind for a media key, or speeds it up.
+     */
+    public void rewind() {
+        changeTrickSpeed(-1);
     }
 
     private void addPlaybackControlsRow() {
         if (SHOW_DETAIL) {
-            mPlaybackControlsRow = new PlaybackControlsRow(mSelectedMovie);
+            // The row item is rewritten on skip, so it must not be the catalog's shared movie.
+            Movie item = new Movie();
+            item.setId(mSelectedMovie.getId());
+            mPlaybackControlsRow = new PlaybackControlsRow(item);
         } else {
             mPlaybackControlsRow = new PlaybackControlsRow();
         }
@@ -242,8 +343,10 @@ public class PlaybackOverlayFragment extends android.support.v17.leanback.app.Pl
         mShuffleAction = new ShuffleAction(getActivity());
         mSkipNextAction = new PlaybackControlsRow.SkipNextAction(getActivity());
         mSkipPreviousAction = new PlaybackControlsRow.SkipPreviousAction(getActivity());
-        mFastForwardAction = new PlaybackControlsRow.FastForwardAction(getActivity());
-        mRewindAction = new PlaybackControlsRow.RewindAction(getActivity());
+        mFastForwardAction = new PlaybackControlsRow.FastForwardAction(getActivity(),
+                TRICK_SPEEDS.length);
+        mRewindAction = new PlaybackControlsRow.RewindAction(getActivity(),
+                TRICK_SPEEDS.length);
 
         if (PRIMARY_CONTROLS > 5) {
             mPrimaryActionsAdapter.add(mThumbsUpAction);
@@ -252,11 +355,11 @@ public class PlaybackOverlayFragment extends android.support.v17.leanback.app.Pl
         }
         mPrimaryActionsAdapter.add(mSkipPreviousAction);
         if (PRIMARY_CONTROLS > 3) {
-            mPrimaryActionsAdapter.add(new PlaybackControlsRow.RewindAction(getActivity()));
+            mPrimaryActionsAdapter.add(mRewindAction);
         }
         mPrimaryActionsAdapter.add(mPlayPauseAction);
         if (PRIMARY_CONTROLS > 3) {
-            mPrimaryActionsAdapter.add(new PlaybackControlsRow.FastForwardAction(getActivity()));
+            mPrimaryActionsAdapter.add(mFastForwardAction);
         }
         mPrimaryActionsAdapter.add(mSkipNextAction);
 
@@ -287,6 +390,7 @@ public class PlaybackOverlayFragment extends android.support.v17.leanback.app.Pl
     private void updatePlaybackRow(int index) {
         if (mPlaybackControlsRow.getItem() != null) {
             Movie item = (Movie) mPlaybackControlsRow.getItem();
+            item.setId(mItems.get(mCurrentItem).getId());
             item.setTitle(mItems.get(mCurrentItem).getTitle());
             item.setStudio(mItems.get(mCurrentItem).getStudio());
         }
@@ -294,56 +398,153 @@ public class PlaybackOverlayFragment extends android.support.v17.leanback.app.Pl
             updateVideoImage(mItems.get(mCurrentItem).getCardImageURI().toString());
         }
         mRowsAdapter.notifyArrayItemRangeChanged(0, 1);
-        mPlaybackControlsRow.setTotalTime(getDuration());
-        mPlaybackControlsRow.setCurrentTime(0);
+        int duration = DurationProber.getInstance(getActivity())
+                .getDuration(mItems.get(mCurrentItem).getVideoUrl(), mDurationCallback);
+        mPlaybackControlsRow.setTotalTime(Math.max(duration, 0));
+        mClock.setVisibleTickPeriod(getUpdatePeriod());
+        mPlaybackControlsRow.setCurrentTime(getResumePosition());
         mPlaybackControlsRow.setBufferedProgress(0);
+        mNextPrepared = false;
+        mSeekThumbnails = null;
+        if (duration > 0) {
+            loadSeekThumbnails(duration);
+        }
+    }
+
+    private void loadSeekThumbnails(int durationMillis) {
+        SeekThumbnailIndex.load(getActivity(), mItems.get(mCurrentItem).getVideoUrl(),
+                durationMillis, mSeekThumbnailCallback);
+    }
+
+    /*
+     * Starts trick play in {@code direction}, or speeds it up if it already goes that way. The
+     * player stays paused while the position moves; it only seeks once, when trick play ends.
+     */
+    private void changeTrickSpeed(int direction) {
+        if (direction > 0 && mPlaybackControlsRow.getTotalTime() <= 0) {
+            // Until the duration is known there is no end to stop fast forward at.
+            return;
+        }
+        if (mTrickSpeed == 0) {
+            mResumeAfterTrick = mPlayPauseAction.getIndex() == PlayPauseAction.PAUSE;
+            if (mResumeAfterTrick) {
+                togglePlayback(false);
+                mPlayPauseAction.setIndex(PlayPauseAction.PLAY);
+            }
+            mTrickPosition = mPlaybackControlsRow.getCurrentTime();
+        }
+        int level = 0;
+        if (Integer.signum(mTrickSpeed) == direction) {
+            level = Math.min(Arrays.binarySearch(TRICK_SPEEDS, Math.abs(mTrickSpeed)) + 1,
+                    TRICK_SPEEDS.length - 1);
+        }
+        mTrickSpeed = direction * TRICK_SPEEDS[level];
+        setTrickActionIndex(mFastForwardAction, direction > 0 ? level + 1 : 0);
+        setTrickActionIndex(mRewindAction, direction < 0 ? level + 1 : 0);
+
+        if (mSeekPreview == null && mSeekThumbnails != null) {
+            mSeekPreview = mSeekThumbnails.newFrameDrawable();
+            mSeekPreview.setPosition(mTrickPosition);
+            mPlaybackControlsRow.setImageDrawable(mSeekPreview);
+            mRowsAdapter.notifyArrayItemRangeChanged(0, 1);
+        }
+        mTrickHandler.removeCallbacks(mTrickTick);
+        mTrickHandler.postDelayed(mTrickTick, TRICK_TICK);
+    }
+
+    private void stepTrickPlay() {
+        int totalTime = mPlaybackControlsRow.getTotalTime();
+        mTrickPosition += mTrickSpeed * TRICK_TICK;
+        boolean atEnd = mTrickPosition <= 0 || (totalTime > 0 && mTrickPosition >= totalTime);
+        mTrickPosition = Math.max(0, totalTime > 0 ? Math.min(mTrickPosition, totalTime)
+                : mTrickPosition);
+        mPlaybackControlsRow.setCurrentTime(mTrickPosition);
+        if (mSeekPreview != null) {
+            mSeekPreview.setPosition(mTrickPosition);
+        }
+        if (atEnd) {
+            endTrickPlay(true, mResumeAfterTrick);
+        } else {
+            mTrickHandler.postDelayed(mTrickTick, TRICK_TICK);
+        }
+    }
+
+    /*
+     * Leaves trick play, seeking the player to where it got to if {@code seek} is set and
+     * playing from there if {@code play} is set.
+     */
+    private void endTrickPlay(boolean seek, boolean play) {
+        mTrickHandler.removeCallbacks(mTrickTick);
+        mTrickSpeed = 0;
+        setTrickActionIndex(mFastForwardAction, 0);
+        setTrickActionIndex(mRewindAction, 0);
+        if (mSeekPreview != null) {
+            mSeekPreview = null;
+            if (SHOW_IMAGE) {
+                updateVideoImage(mItems.get(mCurrentItem).getCardImageURI().toString());
+            }
+        }
+        if (seek) {
+            mResumePositions.setPosition(mItems.get(mCurrentItem).getVideoUrl(),
+                    mTrickPosition);
+            mCallback.onFragmentSeekTo(mTrickPosition);
+            mPlaybackControlsRow.setCurrentTime(mTrickPosition);
+        }
+        if (play) {
+            togglePlayback(true);
+            mPlayPauseAction.setIndex(PlayPauseAction.PAUSE);
+            notifyChanged(mPlayPauseAction);
+        }
+    }
+
+    private void setTrickActionIndex(PlaybackControlsRow.MultiAction action, int index) {
+        if (action.getIndex() != index) {
+            action.setIndex(index);
+            notifyChanged(action);
+        }
     }
 
     private void addOtherRows() {
         ArrayObjectAdapter listRowAdapter = new ArrayObjectAdapter(new CardPresenter());
-        for (Movie movie : mItems) {
-            listRowAdapter.add(movie);
-        }
+        listRowAdapter.addAll(0, CatalogRegistry.getRelated(mSelectedMovie,
+                RelatedIndex.MAX_NEIGHBORS));
         HeaderItem header = new HeaderItem(0, getString(R.string.related_movies));
         mRowsAdapter.add(new ListRow(header, listRowAdapter));
 
     }
 
     private int getUpdatePeriod() {
-        if (getView() == null || mPlaybackControlsRow.getTotalTime() <= 0) {
+        // The view has no width until it is first laid out.
+        if (getView() == null || getView().getWidth() <= 0
+                || mPlaybackControlsRow.getTotalTime() <= 0) {
             return DEFAULT_UPDATE_PERIOD;
         }
-        return Math.max(UPDATE_PERIOD, mPlaybackControlsRow.getTotalTime() / getView().getWidth());
+        return mPlaybackControlsRow.getTotalTime() / getView().getWidth();
     }
 
-    private void startProgressAutomation() {
-        mRunnable = new Runnable() {
-            @Override
-            public void run() {
-                int updatePeriod = getUpdatePeriod();
-                int currentTime = mPlaybackControlsRow.getCurrentTime() + updatePeriod;
-                int totalTime = mPlaybackControlsRow.getTotalTime();
-                mPlaybackControlsRow.setCurrentTime(currentTime);
-                mPlaybackControlsRow.setBufferedProgress(currentTime + SIMULATED_BUFFERED_TIME);
+    /**
+     * Called when the playing video reached its end.
+     */
+    public void onPlaybackCompleted() {
+        mResumePositions.setPosition(mItems.get(mCurrentItem).getVideoUrl(), 0);
+        next();
+    }
 
-                if (totalTime > 0 && totalTime <= currentTime) {
-                    next();
-                }
-                mHandler.postDelayed(this, updatePeriod);
-            }
-        };
-        mHandler.postDelayed(mRunnable, getUpdatePeriod());
+    private int getResumePosition() {
+        return mResumePositions.getPosition(mItems.get(mCurrentItem).getVideoUrl());
+    }
+
+    private int nextIndex() {
+        return mCurrentItem + 1 < mItems.size() ? mCurrentItem + 1 : 0;
     }
 
     private void next() {
-        if (++mCurrentItem >= mItems.size()) {
-            mCurrentItem = 0;
-        }
+        mCurrentItem = nextIndex();
 
         if (mPlayPauseAction.getIndex() == PlayPauseAction.PLAY) {
-            mCallback.onFragmentPlayPause(mItems.get(mCurrentItem), 0, false);
+            mCallback.onFragmentPlayPause(mItems.get(mCurrentItem), getResumePosition(), false);
         } else {
-            mCallback.onFragmentPlayPause(mItems.get(mCurrentItem), 0, true);
+            mCallback.onFragmentPlayPause(mItems.get(mCurrentItem), getResumePosition(), true);
         }
         updatePlaybackRow(mCurrentItem);
     }
@@ -353,22 +554,22 @@ public class PlaybackOverlayFragment extends android.support.v17.leanback.app.Pl
             mCurrentItem = mItems.size() - 1;
         }
         if (mPlayPauseAction.getIndex() == PlayPauseAction.PLAY) {
-            mCallback.onFragmentPlayPause(mItems.get(mCurrentItem), 0, false);
+            mCallback.onFragmentPlayPause(mItems.get(mCurrentItem), getResumePosition(), false);
         } else {
-            mCallback.onFragmentPlayPause(mItems.get(mCurrentItem), 0, true);
+            mCallback.onFragmentPlayPause(mItems.get(mCurrentItem), getResumePosition(), true);
         }
         updatePlaybackRow(mCurrentItem);
     }
 
-    private void stopProgressAutomation() {
-        if (mHandler != null && mRunnable != null) {
-            mHandler.removeCallbacks(mRunnable);
-        }
-    }
-
     @Override
     public void onStop() {
-        stopProgressAutomation();
+        if (mTrickSpeed != 0) {
+            endTrickPlay(false, false);
+        }
+        if (mClock != null) {
+            mClock.stop();
+            mResumePositions.flush();
+        }
         super.onStop();
     }
 
@@ -388,6 +589,12 @@ public class PlaybackOverlayFragment extends android.support.v17.leanback.app.Pl
     // Container Activity must implement this interface
     public interface OnPlayPauseClickedListener {
         void onFragmentPlayPause(Movie movie, int position, Boolean playPause);
+
+        void onFragmentPrepareNext(Movie movie);
+
+        void onFragmentSeekTo(int position);
+
+        MediaController.MediaPlayerControl getPlayerControl();
     }
 
     static class DescriptionPresenter extends AbstractDetailsDescriptionPresenter {
@@ -0,0 +1,49 @@
+package com.testapp.amazontvsample;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
+
+/**
+ * SQLiteHelper for the table of playback positions to resume videos from
+ */
+public class ResumePositionSQLiteHelper extends SQLiteOpenHelper {
+    //table name
+    public static final String TABLE_POSITIONS = "resume_positions";
+    //video url
+    public static final String COLUMN_VIDEO_URL = "video_url";
+    //position in milliseconds
+    public static final String COLUMN_POSITION = "position";
+    //when the position was saved
+    public static final String COLUMN_UPDATED = "updated";
+
+    private static final String DATABASE_NAME = "playback.db";
+    private static final int DATABASE_VERSION = 1;
+
+    // Database creation sql statement
+    private static final String DATABASE_CREATE = "create table " + TABLE_POSITIONS
+            + "("
+            + COLUMN_VIDEO_URL
+            + " text primary key not null, "
+            + COLUMN_POSITION
+            + " integer not null, "
+            + COLUMN_UPDATED
+            + " integer not null"
+            + ");";
+
+    public ResumePositionSQLiteHelper(final Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onCreate(final SQLiteDatabase database) {
+        database.execSQL(DATABASE_CREATE);
+    }
+
+    @Override
+    public void onUpgrade(final SQLiteDatabase db, final int oldVersion, final int newVersion) {
+        Log.w(ResumePositionSQLiteHelper.class.getName(), "Upgrading database from version "
+                + oldVersion + " to " + newVersion);
+    }
+}
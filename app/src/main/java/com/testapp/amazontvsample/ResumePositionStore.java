@@ -0,0 +1,235 @@
+package com.testapp.amazontvsample;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Where to resume each video from, kept in memory and written behind to SQLite.
+ *
+ * Every position is read into a map when the store is created, so lookups never touch the
+ * database. Updates go to the map at once; the latest position of each video is written in one
+ * transaction a few seconds after the first unsaved update, or when flush() is called. Positions
+ * are only written on the store's own thread; if writing fails they are tried again later.
+ */
+public final class ResumePositionStore {
+    private static final String TAG = "ResumePositionStore";
+
+    private static final long FLUSH_DELAY_SECONDS = 5;
+
+    public interface Callback {
+        /**
+         * Called on the main thread once the stored positions have been read.
+         */
+        void onPositionsLoaded();
+    }
+
+    private static ResumePositionStore sInstance;
+
+    private final ResumePositionSQLiteHelper mDbHelper;
+    private final ScheduledExecutorService mExecutor =
+            Executors.newSingleThreadScheduledExecutor();
+    private final Map<String, Integer> mPositions = new ConcurrentHashMap<String, Integer>();
+    // Positions not written yet; 0 deletes the row. Guarded by itself, as are changes to
+    // mPositions.
+    private final Map<String, Integer> mPending = new HashMap<String, Integer>();
+    private boolean mFlushScheduled;
+    // Guarded by mPending.
+    private boolean mLoaded;
+    private final List<Callback> mLoadCallbacks = new ArrayList<Callback>();
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    private final Runnable mFlush = new Runnable() {
+        @Override
+        public void run() {
+            write();
+        }
+    };
+
+    public static synchronized ResumePositionStore getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ResumePositionStore(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private ResumePositionStore(Context context) {
+        mDbHelper = new ResumePositionSQLiteHelper(context);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                read();
+            }
+        });
+    }
+
+    /**
+     * Returns where to resume {@code videoUrl} from in milliseconds, or 0.
+     */
+    public int getPosition(String videoUrl) {
+        Integer position = mPositions.get(videoUrl);
+        return position != null ? position : 0;
+    }
+
+    /**
+     * Remembers {@code positionMillis} for {@code videoUrl}; 0 forgets it, e.g. once the video
+     * played to the end.
+     */
+    public void setPosition(String videoUrl, int positionMillis) {
+        Integer position = mPositions.get(videoUrl);
+        if (position != null ? position == positionMillis : positionMillis == 0) {
+            return;
+        }
+        synchronized (mPending) {
+            if (positionMillis > 0) {
+                mPositions.put(videoUrl, positionMillis);
+            } else {
+                mPositions.remove(videoUrl);
+            }
+            mPending.put(videoUrl, positionMillis);
+            if (!mFlushScheduled) {
+                mFlushScheduled = true;
+                mExecutor.schedule(mFlush, FLUSH_DELAY_SECONDS, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    /**
+     * Calls {@code callback} once the stored positions have been read. Until then getPosition()
+     * only knows the positions set since the store was created.
+     */
+    public void whenLoaded(final Callback callback) {
+        synchronized (mPending) {
+            if (!mLoaded) {
+                mLoadCallbacks.add(callback);
+                return;
+            }
+        }
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                callback.onPositionsLoaded();
+            }
+        });
+    }
+
+    /**
+     * Writes the unsaved positions now, in the background.
+     */
+    public void flush() {
+        mExecutor.execute(mFlush);
+    }
+
+    private void read() {
+        Cursor cursor = null;
+        try {
+            SQLiteDatabase database = mDbHelper.getReadableDatabase();
+            cursor = database.query(ResumePositionSQLiteHelper.TABLE_POSITIONS,
+                    new String[]{ResumePositionSQLiteHelper.COLUMN_VIDEO_URL,
+                            ResumePositionSQLiteHelper.COLUMN_POSITION},
+                    null, null, null, null, null);
+            while (cursor.moveToNext()) {
+                String videoUrl = cursor.getString(0);
+                // Updates made while reading are newer than what is stored.
+                synchronized (mPending) {
+                    if (!mPending.containsKey(videoUrl)) {
+                        mPositions.put(videoUrl, cursor.getInt(1));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            Log.w(TAG, "Cannot read resume positions", e);
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+
+        final List<Callback> callbacks;
+        synchronized (mPending) {
+            mLoaded = true;
+            callbacks = new ArrayList<Callback>(mLoadCallbacks);
+            mLoadCallbacks.clear();
+        }
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                for (Callback callback : callbacks) {
+                    callback.onPositionsLoaded();
+                }
+            }
+        });
+    }
+
+    private void write() {
+        Map<String, Integer> pending;
+        synchronized (mPending) {
+            mFlushScheduled = false;
+            if (mPending.isEmpty()) {
+                return;
+            }
+            pending = new HashMap<String, Integer>(mPending);
+            mPending.clear();
+        }
+
+        long now = System.currentTimeMillis();
+        try {
+            SQLiteDatabase database = mDbHelper.getWritableDatabase();
+            SQLiteStatement insert = database.compileStatement("insert or replace into "
+                    + ResumePositionSQLiteHelper.TABLE_POSITIONS + " ("
+                    + ResumePositionSQLiteHelper.COLUMN_VIDEO_URL + ", "
+                    + ResumePositionSQLiteHelper.COLUMN_POSITION + ", "
+                    + ResumePositionSQLiteHelper.COLUMN_UPDATED + ") values (?, ?, ?)");
+            SQLiteStatement delete = database.compileStatement("delete from "
+                    + ResumePositionSQLiteHelper.TABLE_POSITIONS + " where "
+                    + ResumePositionSQLiteHelper.COLUMN_VIDEO_URL + " = ?");
+            database.beginTransaction();
+            try {
+                for (Map.Entry<String, Integer> entry : pending.entrySet()) {
+                    if (entry.getValue() > 0) {
+                        insert.bindString(1, entry.getKey());
+                        insert.bindLong(2, entry.getValue());
+                        insert.bindLong(3, now);
+                        insert.executeInsert();
+                    } else {
+                        delete.bindString(1, entry.getKey());
+                        delete.executeUpdateDelete();
+                    }
+                }
+                database.setTransactionSuccessful();
+            } finally {
+                database.endTransaction();
+                insert.close();
+                delete.close();
+            }
+        } catch (SQLException e) {
+            Log.w(TAG, "Cannot write " + pending.size() + " resume positions", e);
+            synchronized (mPending) {
+                // Positions set since this write started are newer.
+                for (Map.Entry<String, Integer> entry : pending.entrySet()) {
+                    if (!mPending.containsKey(entry.getKey())) {
+                        mPending.put(entry.getKey(), entry.getValue());
+                    }
+                }
+                if (!mFlushScheduled) {
+                    mFlushScheduled = true;
+                    mExecutor.schedule(mFlush, FLUSH_DELAY_SECONDS, TimeUnit.SECONDS);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.testapp.amazontvsample;
+
+import android.app.Activity;
+import android.os.Bundle;
+
+/*
+ * Search activity class that loads MovieSearchFragment
+ */
+public class SearchActivity extends Activity {
+
+    @Override
+    public void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_search);
+    }
+
+    @Override
+    public boolean onSearchRequested() {
+        // Pressing search again restarts the query in place
+        MovieSearchFragment fragment = (MovieSearchFragment) getFragmentManager()
+                .findFragmentById(R.id.search_fragment);
+        fragment.startRecognition();
+        return true;
+    }
+}
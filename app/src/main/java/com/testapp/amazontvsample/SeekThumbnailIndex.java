@@ -0,0 +1,311 @@
+package com.testapp.amazontvsample;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.media.MediaMetadataRetriever;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+ * Preview frames of a video for trick play, so that scrubbing can show where it is without
+ * seeking the player on every step.
+ *
+ * The frames are tiled into one sprite sheet, with a table of the time each was taken at. They
+ * are extracted in the background with MediaMetadataRetriever, at most MAX_FRAMES spread over
+ * the video, and kept in the cache directory as a JPEG sprite and a small index file, so each
+ * video is only extracted once.
+ */
+public final class SeekThumbnailIndex {
+    private static final String TAG = "SeekThumbnailIndex";
+
+    public interface Callback {
+        /**
+         * Called on the main thread once the index of {@code videoUrl} is ready.
+         */
+        void onIndexReady(String videoUrl, SeekThumbnailIndex index);
+    }
+
+    private static final String CACHE_DIR = "seek_thumbnails";
+    private static final int FORMAT_VERSION = 1;
+    private static final int MAX_FRAMES = 100;
+    private static final int MIN_FRAME_INTERVAL = 5000;
+    private static final int COLUMNS = 10;
+    private static final int THUMB_WIDTH = 160;
+    private static final int THUMB_HEIGHT = 90;
+    private static final int JPEG_QUALITY = 80;
+
+    private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor();
+    private static final Handler sHandler = new Handler(Looper.getMainLooper());
+    // Only the video asked for last is worth extracting; older requests give up.
+    private static volatile String sWantedUrl;
+
+    private final Bitmap mSprite;
+    private final long[] mTimes;
+
+    private SeekThumbnailIndex(Bitmap sprite, long[] times) {
+        mSprite = sprite;
+        mTimes = times;
+    }
+
+    /**
+     * Loads the index of {@code videoUrl} from the cache, or extracts it, in the background.
+     * Nothing is delivered if it fails or another video is asked for in the meantime.
+     */
+    public static void load(Context context, final String videoUrl, final int durationMillis,
+                            final Callback callback) {
+        final File dir = new File(context.getCacheDir(), CACHE_DIR);
+        sWantedUrl = videoUrl;
+        sExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!videoUrl.equals(sWantedUrl)) {
+                    return;
+                }
+                String name = Long.toHexString(Movie.stableId(CACHE_DIR, videoUrl));
+                File spriteFile = new File(dir, name + ".jpg");
+                File indexFile = new File(dir, name + ".idx");
+                SeekThumbnailIndex index = read(videoUrl, spriteFile, indexFile);
+                if (index == null) {
+                    index = extract(videoUrl, durationMillis);
+                    if (index != null) {
+                        write(index, videoUrl, dir, spriteFile, indexFile);
+                    }
+                }
+                if (index != null) {
+                    final SeekThumbnailIndex result = index;
+                    sHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            callback.onIndexReady(videoUrl, result);
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    public int getCount() {
+        return mTimes.length;
+    }
+
+    /**
+     * Returns the last frame taken at or before {@code positionMillis}.
+     */
+    public int indexOf(long positionMillis) {
+        int i = Arrays.binarySearch(mTimes, positionMillis);
+        return i >= 0 ? i : Math.max(0, -i - 2);
+    }
+
+    public long getTimeAt(int index) {
+        return mTimes[index];
+    }
+
+    /**
+     * Returns a drawable that shows one frame at a time, see FrameDrawable.setFrame().
+     */
+    public FrameDrawable newFrameDrawable() {
+        return new FrameDrawable();
+    }
+
+    private static SeekThumbnailIndex extract(String videoUrl, int durationMillis) {
+        int interval = Math.max(MIN_FRAME_INTERVAL, durationMillis / MAX_FRAMES);
+        int count = Math.max(1, Math.min(MAX_FRAMES, durationMillis / interval));
+        int rows = (count + COLUMNS - 1) / COLUMNS;
+        Bitmap sprite = Bitmap.createBitmap(COLUMNS * THUMB_WIDTH, rows * THUMB_HEIGHT,
+                Bitmap.Config.RGB_565);
+        Canvas canvas = new Canvas(sprite);
+        Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        Rect dst = new Rect();
+        long[] times = new long[count];
+
+        MediaMetadataRetriever mmr = new MediaMetadataRetriever();
+        try {
+            mmr.setDataSource(videoUrl, new HashMap<String, String>());
+            for (int i = 0; i < count; i++) {
+                if (!videoUrl.equals(sWantedUrl)) {
+                    sprite.recycle();
+                    return null;
+                }
+                times[i] = (long) i * interval;
+                Bitmap frame = mmr.getFrameAtTime(times[i] * 1000,
+                        MediaMetadataRetriever.OPTION_CLOSEST_SYNC);
+                if (frame != null) {
+                    frameBounds(i, dst);
+                    canvas.drawBitmap(frame, null, dst, paint);
+                    frame.recycle();
+                }
+            }
+            return new SeekThumbnailIndex(sprite, times);
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Cannot extract frames of " + videoUrl, e);
+            sprite.recycle();
+            return null;
+        } finally {
+            mmr.release();
+        }
+    }
+
+    private static SeekThumbnailIndex read(String videoUrl, File spriteFile, File indexFile) {
+        if (!spriteFile.exists() || !indexFile.exists()) {
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+            if (in.readInt() != FORMAT_VERSION || !in.readUTF().equals(videoUrl)) {
+                return null;
+            }
+            long[] times = new long[in.readInt()];
+            for (int i = 0; i < times.length; i++) {
+                times[i] = in.readLong();
+            }
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inPreferredConfig = Bitmap.Config.RGB_565;
+            Bitmap sprite = BitmapFactory.decodeFile(spriteFile.getPath(), options);
+            return sprite != null ? new SeekThumbnailIndex(sprite, times) : null;
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot read " + indexFile, e);
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /*
+     * The sprite is written before the index, so an index file is only ever next to a complete
+     * sprite.
+     */
+    private static void write(SeekThumbnailIndex index, String videoUrl, File dir,
+                              File spriteFile, File indexFile) {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            Log.w(TAG, "Cannot create " + dir);
+            return;
+        }
+        indexFile.delete();
+        OutputStream spriteOut = null;
+        DataOutputStream indexOut = null;
+        try {
+            spriteOut = new BufferedOutputStream(new FileOutputStream(spriteFile));
+            index.mSprite.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, spriteOut);
+            spriteOut.close();
+            spriteOut = null;
+
+            indexOut = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(indexFile)));
+            indexOut.writeInt(FORMAT_VERSION);
+            indexOut.writeUTF(videoUrl);
+            indexOut.writeInt(index.mTimes.length);
+            for (long time : index.mTimes) {
+                indexOut.writeLong(time);
+            }
+            indexOut.close();
+            indexOut = null;
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot write " + indexFile, e);
+            indexFile.delete();
+        } finally {
+            closeQuietly(spriteOut);
+            closeQuietly(indexOut);
+        }
+    }
+
+    private static void frameBounds(int index, Rect out) {
+        int left = (index % COLUMNS) * THUMB_WIDTH;
+        int top = (index / COLUMNS) * THUMB_HEIGHT;
+        out.set(left, top, left + THUMB_WIDTH, top + THUMB_HEIGHT);
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // Ignored.
+            }
+        }
+    }
+
+    /*
+     * Draws one frame of the sprite sheet. Changing the frame only redraws, nothing is decoded
+     * or allocated.
+     */
+    public final class FrameDrawable extends Drawable {
+        private final Paint mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        private final Rect mFrame = new Rect();
+        private int mIndex = -1;
+
+        FrameDrawable() {
+            setFrame(0);
+        }
+
+        /**
+         * Shows the frame for {@code positionMillis}.
+         */
+        public void setPosition(long positionMillis) {
+            setFrame(indexOf(positionMillis));
+        }
+
+        public void setFrame(int index) {
+            if (index != mIndex) {
+                mIndex = index;
+                frameBounds(index, mFrame);
+                invalidateSelf();
+            }
+        }
+
+        @Override
+        public void draw(Canvas canvas) {
+            canvas.drawBitmap(mSprite, mFrame, getBounds(), mPaint);
+        }
+
+        @Override
+        public int getIntrinsicWidth() {
+            return THUMB_WIDTH;
+        }
+
+        @Override
+        public int getIntrinsicHeight() {
+            return THUMB_HEIGHT;
+        }
+
+        @Override
+        public void setAlpha(int alpha) {
+            mPaint.setAlpha(alpha);
+            invalidateSelf();
+        }
+
+        @Override
+        public void setColorFilter(ColorFilter colorFilter) {
+            mPaint.setColorFilter(colorFilter);
+            invalidateSelf();
+        }
+
+        @Override
+        public int getOpacity() {
+            return PixelFormat.OPAQUE;
+        }
+    }
+}
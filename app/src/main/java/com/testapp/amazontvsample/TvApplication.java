@@ -0,0 +1,16 @@
+package com.testapp.amazontvsample;
+
+import android.app.Application;
+
+/*
+ * Sets up process-wide services before any activity starts.
+ */
+public class TvApplication extends Application {
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        ImageCacheConfig.setup(this);
+        // Read resume positions early, so details screens find them in memory.
+        ResumePositionStore.getInstance(this);
+    }
+}
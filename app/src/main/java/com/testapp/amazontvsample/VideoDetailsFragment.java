@@ -15,7 +15,7 @@
 package com.testapp.amazontvsample;
 
 import android.content.Intent;
-import android.graphics.drawable.Drawable;
+import android.graphics.Bitmap;
 import android.os.Bundle;
 import android.support.v17.leanback.app.BackgroundManager;
 import android.support.v17.leanback.app.DetailsFragment;
@@ -34,6 +34,7 @@ import android.support.v17.leanback.widget.Presenter;
 import android.support.v17.leanback.widget.Row;
 import android.support.v17.leanback.widget.RowPresenter;
 import android.support.v4.app.ActivityOptionsCompat;
+import android.text.format.DateUtils;
 import android.util.DisplayMetrics;
 import android.util.Log;
 import android.widget.Toast;
@@ -42,9 +43,7 @@ import com.bumptech.glide.Glide;
 import com.bumptech.glide.load.resource.drawable.GlideDrawable;
 import com.bumptech.glide.request.animation.GlideAnimation;
 import com.bumptech.glide.request.target.SimpleTarget;
-
-import java.util.Collections;
-import java.util.List;
+import com.testapp.catalog.CatalogRegistry;
 
 /*
  * LeanbackDetailsFragment extends DetailsFragment, a Wrapper fragment for leanback details screens.
@@ -61,14 +60,19 @@ public class VideoDetailsFragment extends DetailsFragment {
     private static final int DETAIL_THUMB_HEIGHT = 274;
 
     private static final int NUM_COLS = 10;
+    // Lets the shared element transition start before the background is decoded.
+    private static final int BACKGROUND_UPDATE_DELAY = 0;
 
     private Movie mSelectedMovie;
+    private DetailsOverviewRow mDetailsRow;
+    private Action mWatchAction;
 
     private ArrayObjectAdapter mAdapter;
     private ClassPresenterSelector mPresenterSelector;
 
     private BackgroundManager mBackgroundManager;
-    private Drawable mDefaultBackground;
+    private BackgroundUpdateScheduler mBackgroundScheduler;
+    private String mRequestedBackground;
     private DisplayMetrics mMetrics;
 
     @Override
@@ -78,15 +82,25 @@ public class VideoDetailsFragment extends DetailsFragment {
 
         prepareBackgroundManager();
 
-        mSelectedMovie = (Movie) getActivity().getIntent()
-                .getSerializableExtra(DetailsActivity.MOVIE);
+        long movieId = getActivity().getIntent().getLongExtra(DetailsActivity.MOVIE_ID, -1);
+        mSelectedMovie = CatalogRegistry.getMovie(getActivity(), movieId);
         if (mSelectedMovie != null) {
             setupAdapter();
             setupDetailsOverviewRow();
+            // Shortly after launch the saved positions may still be being read.
+            ResumePositionStore.getInstance(getActivity()).whenLoaded(
+                    new ResumePositionStore.Callback() {
+                        @Override
+                        public void onPositionsLoaded() {
+                            if (isAdded()) {
+                                updateWatchAction();
+                            }
+                        }
+                    });
             setupDetailsOverviewRowPresenter();
             setupMovieListRow();
             setupMovieListRowPresenter();
-            updateBackground(mSelectedMovie.getBackgroundImageUrl());
+            mBackgroundScheduler.schedule(mSelectedMovie.getBackgroundImageUrl());
             setOnItemViewClickedListener(new ItemViewClickedListener());
         } else {
             Intent intent = new Intent(getActivity(), MainActivity.class);
@@ -94,29 +108,52 @@ public class VideoDetailsFragment extends DetailsFragment {
         }
     }
 
+    @Override
+    public void onResume() {
+        super.onResume();
+        if (mSelectedMovie != null) {
+            updateWatchAction();
+        }
+    }
+
     @Override
     public void onStop() {
+        mBackgroundScheduler.cancel();
         super.onStop();
     }
 
     private void prepareBackgroundManager() {
+        mBackgroundScheduler = new BackgroundUpdateScheduler(BACKGROUND_UPDATE_DELAY,
+                new BackgroundUpdateScheduler.Listener() {
+                    @Override
+                    public void onUpdateBackground(String uri) {
+                        updateBackground(uri);
+                    }
+                });
         mBackgroundManager = BackgroundManager.getInstance(getActivity());
         mBackgroundManager.attach(getActivity().getWindow());
-        mDefaultBackground = getResources().getDrawable(R.drawable.default_background);
         mMetrics = new DisplayMetrics();
         getActivity().getWindowManager().getDefaultDisplay().getMetrics(mMetrics);
     }
 
     protected void updateBackground(String uri) {
-        Glide.with(getActivity())
-                .load(uri)
-                .centerCrop()
-                .error(mDefaultBackground)
-                .into(new SimpleTarget<GlideDrawable>(mMetrics.widthPixels, mMetrics.heightPixels) {
+        mRequestedBackground = uri;
+        BackgroundArtCache.getInstance(getActivity()).load(uri, mMetrics.widthPixels,
+                mMetrics.heightPixels, BackgroundArtCache.Variant.DIMMED,
+                new BackgroundArtCache.Callback() {
                     @Override
-                    public void onResourceReady(GlideDrawable resource,
-                                                GlideAnimation<? super GlideDrawable> glideAnimation) {
-                        mBackgroundManager.setDrawable(resource);
+                    public void onBackgroundReady(String loadedUri, Bitmap bitmap) {
+                        if (isAdded() && loadedUri.equals(mRequestedBackground)) {
+                            mBackgroundManager.setBitmap(bitmap);
+                        }
+                    }
+
+                    @Override
+                    public void onBackgroundFailed(String failedUri) {
+                        if (isAdded() && failedUri.equals(mRequestedBackground)) {
+                            mBackgroundManager.setDrawable(
+                                    getResources().getDrawable(R.drawable.default_background));
+                        }
                     }
                 });
     }
@@ -150,14 +187,35 @@ public class VideoDetailsFragment extends DetailsFragment {
                     }
                 });
 
-        row.addAction(new Action(ACTION_WATCH_TRAILER, getResources().getString(
-                R.string.watch_trailer_1), getResources().getString(R.string.watch_trailer_2)));
+        mWatchAction = new Action(ACTION_WATCH_TRAILER, getResources().getString(
+                R.string.watch_trailer_1), getResources().getString(R.string.watch_trailer_2));
+        row.addAction(mWatchAction);
         row.addAction(new Action(ACTION_RENT, getResources().getString(R.string.rent_1),
                 getResources().getString(R.string.rent_2)));
         row.addAction(new Action(ACTION_BUY, getResources().getString(R.string.buy_1),
                 getResources().getString(R.string.buy_2)));
 
         mAdapter.add(row);
+        mDetailsRow = row;
+    }
+
+    /*
+     * Offers to resume the trailer where it was left, if it was. The position comes from the
+     * store's in-memory map, so this is cheap enough for every onResume().
+     */
+    private void updateWatchAction() {
+        int position = ResumePositionStore.getInstance(getActivity())
+                .getPosition(mSelectedMovie.getVideoUrl());
+        if (position > 0) {
+            mWatchAction.setLabel1(getString(R.string.resume_trailer_1));
+            mWatchAction.setLabel2(getString(R.string.resume_trailer_2,
+                    DateUtils.formatElapsedTime(position / 1000)));
+        } else {
+            mWatchAction.setLabel1(getString(R.string.watch_trailer_1));
+            mWatchAction.setLabel2(getString(R.string.watch_trailer_2));
+        }
+        ArrayObjectAdapter actions = (ArrayObjectAdapter) mDetailsRow.getActionsAdapter();
+        actions.notifyArrayItemRangeChanged(actions.indexOf(mWatchAction), 1);
     }
 
     private void setupDetailsOverviewRowPresenter() {
@@ -176,7 +234,7 @@ public class VideoDetailsFragment extends DetailsFragment {
             public void onActionClicked(Action action) {
                 if (action.getId() == ACTION_WATCH_TRAILER) {
                     Intent intent = new Intent(getActivity(), PlaybackOverlayActivity.class);
-                    intent.putExtra(DetailsActivity.MOVIE, mSelectedMovie);
+                    intent.putExtra(DetailsActivity.MOVIE_ID, mSelectedMovie.getId());
                     startActivity(intent);
                 } else {
                     Toast.makeText(getActivity(), action.toString(), Toast.LENGTH_SHORT).show();
@@ -188,13 +246,9 @@ public class VideoDetailsFragment extends DetailsFragment {
 
     private void setupMovieListRow() {
         String subcategories[] = {getString(R.string.related_movies)};
-        List<Movie> list = MovieList.list;
 
-        Collections.shuffle(list);
         ArrayObjectAdapter listRowAdapter = new ArrayObjectAdapter(new CardPresenter());
-        for (int j = 0; j < NUM_COLS; j++) {
-            listRowAdapter.add(list.get(j % 5));
-        }
+        listRowAdapter.addAll(0, CatalogRegistry.getRelated(mSelectedMovie, NUM_COLS));
 
         HeaderItem header = new HeaderItem(0, subcategories[0]);
         mAdapter.add(new ListRow(header, listRowAdapter));
@@ -213,7 +267,7 @@ public class VideoDetailsFragment extends DetailsFragment {
                 Movie movie = (Movie) item;
                 Log.d(TAG, "Item: " + item.toString());
                 Intent intent = new Intent(getActivity(), DetailsActivity.class);
-                intent.putExtra(getResources().getString(R.string.movie), mSelectedMovie);
+                intent.putExtra(DetailsActivity.MOVIE_ID, movie.getId());
                 intent.putExtra(getResources().getString(R.string.should_start), true);
                 startActivity(intent);
 
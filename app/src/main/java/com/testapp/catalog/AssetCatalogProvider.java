@@ -0,0 +1,25 @@
+package com.testapp.catalog;
+
+import android.content.Context;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the catalog feed bundled in the app's assets, so the browse screen works offline.
+ */
+public class AssetCatalogProvider extends StreamingCatalogProvider {
+    private final Context mContext;
+    private final String mAssetName;
+
+    public AssetCatalogProvider(Context context, String assetName) {
+        mContext = context.getApplicationContext();
+        mAssetName = assetName;
+    }
+
+    @Override
+    protected InputStream openStream() throws IOException {
+        return new BufferedInputStream(mContext.getAssets().open(mAssetName));
+    }
+}
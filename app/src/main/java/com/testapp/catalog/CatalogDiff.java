@@ -0,0 +1,130 @@
+package com.testapp.catalog;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v7.util.DiffUtil;
+
+import com.testapp.amazontvsample.Movie;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Works out how the rows on screen change when a refreshed catalog replaces the current one.
+ * <p>
+ * The new {@link CategoryIndex} and a diff for every requested row are computed on a background
+ * thread and handed back on the main thread. Movies are matched by {@link Movie#getId()} and
+ * count as changed when their {@link Movie#getContentHash()} differs.
+ */
+public final class CatalogDiff {
+    private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor();
+    private static final Handler sHandler = new Handler(Looper.getMainLooper());
+
+    private CatalogDiff() {
+    }
+
+    public interface Callback {
+        /**
+         * Called on the main thread with the index of the refreshed catalog and the rows passed
+         * to {@link #compute}, now carrying their diffs.
+         */
+        void onDiffReady(CategoryIndex catalog, List<Row> rows);
+    }
+
+    /**
+     * One row on screen: the first {@code oldSize} movies of a category, which may show up to
+     * {@code limit} movies without paging in more.
+     */
+    public static final class Row {
+        private final String mCategory;
+        private final int mOldSize;
+        private final int mLimit;
+        private int mNewSize;
+        private DiffUtil.DiffResult mResult;
+
+        public Row(String category, int oldSize, int limit) {
+            mCategory = category;
+            mOldSize = oldSize;
+            mLimit = limit;
+        }
+
+        public String getCategory() {
+            return mCategory;
+        }
+
+        public int getOldSize() {
+            return mOldSize;
+        }
+
+        /**
+         * Returns the number of movies the row shows after the diff is applied.
+         */
+        public int getNewSize() {
+            return mNewSize;
+        }
+
+        public DiffUtil.DiffResult getResult() {
+            return mResult;
+        }
+    }
+
+    /**
+     * Indexes {@code catalog} and diffs every row against {@code current} in the background.
+     */
+    public static void compute(final CategoryIndex current, final List<Movie> catalog,
+                               final List<Row> rows, final Callback callback) {
+        sExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final CategoryIndex refreshed = CategoryIndex.build(catalog);
+                for (Row row : rows) {
+                    List<Movie> oldMovies = current.getMovies(row.mCategory, 0, row.mOldSize);
+                    List<Movie> newMovies = refreshed.getMovies(row.mCategory, 0, row.mLimit);
+                    // Moves are reported as a removal and an insertion, which is all a leanback
+                    // ObjectAdapter can notify anyway.
+                    row.mResult = DiffUtil.calculateDiff(
+                            new MovieListCallback(oldMovies, newMovies), false);
+                    row.mNewSize = newMovies.size();
+                }
+                sHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onDiffReady(refreshed, rows);
+                    }
+                });
+            }
+        });
+    }
+
+    private static final class MovieListCallback extends DiffUtil.Callback {
+        private final List<Movie> mOld;
+        private final List<Movie> mNew;
+
+        MovieListCallback(List<Movie> oldMovies, List<Movie> newMovies) {
+            mOld = oldMovies;
+            mNew = newMovies;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return mOld.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return mNew.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return mOld.get(oldItemPosition).getId() == mNew.get(newItemPosition).getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return mOld.get(oldItemPosition).getContentHash()
+                    == mNew.get(newItemPosition).getContentHash();
+        }
+    }
+}
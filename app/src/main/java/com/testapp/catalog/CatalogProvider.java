@@ -0,0 +1,49 @@
+package com.testapp.catalog;
+
+import com.testapp.amazontvsample.Movie;
+
+import java.util.List;
+
+/**
+ * Source of the {@link Movie} catalog shown by the browse screen.
+ * <p>
+ * Implementations load off the main thread and report back on the main thread, handing out
+ * the catalog in batches so the first rows can be shown before the whole feed is read.
+ */
+public interface CatalogProvider {
+
+    /**
+     * Starts loading the catalog. Results are delivered to {@code callback} on the main thread.
+     */
+    void load(Callback callback);
+
+    /**
+     * Stops an ongoing load. No callbacks are delivered after this returns.
+     */
+    void cancel();
+
+    interface Callback {
+        /**
+         * Called for every batch of movies read from the feed, in feed order.
+         */
+        void onBatch(List<Movie> batch);
+
+        /**
+         * Called once the whole feed has been read.
+         *
+         * @param catalog every movie delivered through {@link #onBatch}, in feed order
+         */
+        void onComplete(List<Movie> catalog);
+
+        /**
+         * Called when a fresher catalog replaces the one already delivered through
+         * {@link #onBatch} and {@link #onComplete}.
+         */
+        void onRefresh(List<Movie> catalog);
+
+        /**
+         * Called if the feed could not be read. Batches delivered before the error stay valid.
+         */
+        void onError(Exception e);
+    }
+}
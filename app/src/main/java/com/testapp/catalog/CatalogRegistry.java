@@ -0,0 +1,108 @@
+package com.testapp.catalog;
+
+import android.content.Context;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.testapp.amazontvsample.Movie;
+import com.testapp.amazontvsample.MovieList;
+import com.testapp.utils.AppConstants;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Process-wide access to catalog movies by {@link Movie#getId()}.
+ * <p>
+ * Screens pass only the movie id between activities and look the shared instance up here. If
+ * the process was killed while a details or playback screen was open, the catalog is read back
+ * from the last snapshot on the first lookup.
+ */
+public final class CatalogRegistry {
+    private static final String TAG = "CatalogRegistry";
+
+    private CatalogRegistry() {
+    }
+
+    /**
+     * Creates the provider for the configured feed, backed by the catalog snapshot.
+     */
+    public static CatalogProvider createProvider(Context context) {
+        String url = AppConstants.getCatalogUrl();
+        CatalogProvider feed;
+        if (!TextUtils.isEmpty(url)) {
+            feed = new UrlCatalogProvider(url);
+        } else {
+            feed = new AssetCatalogProvider(context, MovieList.CATALOG_ASSET);
+        }
+        return new SnapshotCatalogProvider(snapshotFile(context), sourceKey(), feed);
+    }
+
+    /**
+     * Returns the movie with the given id, or {@code null} if it is not in the catalog.
+     */
+    public static Movie getMovie(Context context, long id) {
+        Movie movie = MovieList.getCatalog().getById(id);
+        if (movie == null && MovieList.getCatalog().size() == 0) {
+            rehydrate(context);
+            movie = MovieList.getCatalog().getById(id);
+        }
+        return movie;
+    }
+
+    /**
+     * Returns up to {@code limit} movies related to {@code movie}. Until the related titles of
+     * the catalog have been computed, these are the other movies of its category.
+     */
+    public static List<Movie> getRelated(Movie movie, int limit) {
+        List<Movie> related = MovieList.getRelatedIndex().getRelated(movie.getId(), limit);
+        if (!related.isEmpty()) {
+            return related;
+        }
+        for (Movie other : MovieList.getCatalog().getMovies(movie.getCategory(), 0, limit + 1)) {
+            if (other.getId() != movie.getId() && related.size() < limit) {
+                related.add(other);
+            }
+        }
+        return related;
+    }
+
+    /**
+     * Computes the related titles of {@code catalog} in the background and publishes them once
+     * they are ready.
+     */
+    public static void indexRelated(List<Movie> catalog) {
+        RelatedIndex.build(catalog, new RelatedIndex.Callback() {
+            @Override
+            public void onBuilt(RelatedIndex index) {
+                MovieList.setRelatedIndex(index);
+            }
+        });
+    }
+
+    private static synchronized void rehydrate(Context context) {
+        if (MovieList.getCatalog().size() > 0) {
+            return;
+        }
+        List<Movie> catalog = CatalogSnapshot.read(snapshotFile(context), sourceKey());
+        if (catalog == null) {
+            Log.w(TAG, "No catalog snapshot to restore from");
+            return;
+        }
+        Log.d(TAG, "Restored " + catalog.size() + " movies from snapshot");
+        SearchIndex searchIndex = new SearchIndex();
+        searchIndex.add(catalog);
+        MovieList.setSearchIndex(searchIndex);
+        MovieList.setCatalog(CategoryIndex.build(catalog));
+        indexRelated(catalog);
+    }
+
+    private static File snapshotFile(Context context) {
+        return new File(context.getFilesDir(), MovieList.CATALOG_SNAPSHOT);
+    }
+
+    private static String sourceKey() {
+        String url = AppConstants.getCatalogUrl();
+        return TextUtils.isEmpty(url) ? MovieList.CATALOG_ASSET : url;
+    }
+}
@@ -0,0 +1,248 @@
+package com.testapp.catalog;
+
+import android.util.Log;
+import android.util.SparseArray;
+
+import com.testapp.amazontvsample.Movie;
+import com.testapp.amazontvsample.MovieList;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary copy of the catalog, read back through a memory-mapped file on cold start.
+ * <p>
+ * Layout, big-endian:
+ * <pre>
+ * header  magic, format version, record size, source key hash, record count, heap size, CRC32
+ * records one fixed-width record per movie: its id, then (offset, length) into the heap for
+ *         every field
+ * heap    UTF-8 bytes of every distinct string
+ * </pre>
+ * The CRC covers records and heap. A snapshot with another magic, format version or source
+ * key, or with a bad CRC, is rejected.
+ */
+public final class CatalogSnapshot {
+    private static final String TAG = "CatalogSnapshot";
+
+    private static final int MAGIC = 0x4D564353; // "MVCS"
+    private static final short FORMAT_VERSION = 3;
+
+    private static final int FIELD_COUNT = 7;
+    private static final int RECORD_SIZE = 8 + FIELD_COUNT * 8;
+    private static final int HEADER_SIZE = 4 + 2 + 2 + 4 + 4 + 4 + 4;
+    private static final int NULL_OFFSET = -1;
+
+    private static final int CRC_CHUNK_SIZE = 8192;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private CatalogSnapshot() {
+    }
+
+    /**
+     * Writes the catalog to {@code file}. The snapshot is written next to it first and renamed
+     * into place, so a crash mid-write never leaves a half written snapshot behind.
+     */
+    public static void write(File file, String sourceKey, List<Movie> catalog) throws IOException {
+        // Every distinct string is stored once, records refer to it by (offset, length).
+        Map<String, int[]> refs = new HashMap<String, int[]>();
+        List<byte[]> strings = new ArrayList<byte[]>();
+        int heapSize = 0;
+
+        ByteBuffer records = ByteBuffer.allocate(catalog.size() * RECORD_SIZE);
+        for (Movie movie : catalog) {
+            records.putLong(movie.getId());
+            for (String field : fieldsOf(movie)) {
+                if (field == null) {
+                    records.putInt(NULL_OFFSET).putInt(0);
+                    continue;
+                }
+                int[] ref = refs.get(field);
+                if (ref == null) {
+                    byte[] bytes = field.getBytes(UTF_8);
+                    ref = new int[]{heapSize, bytes.length};
+                    refs.put(field, ref);
+                    strings.add(bytes);
+                    heapSize += bytes.length;
+                }
+                records.putInt(ref[0]).putInt(ref[1]);
+            }
+        }
+
+        ByteBuffer body = ByteBuffer.allocate(records.capacity() + heapSize);
+        records.flip();
+        body.put(records);
+        for (byte[] bytes : strings) {
+            body.put(bytes);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(body.array(), 0, body.capacity());
+        body.flip();
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC)
+                .putShort(FORMAT_VERSION)
+                .putShort((short) RECORD_SIZE)
+                .putInt(sourceKey.hashCode())
+                .putInt(catalog.size())
+                .putInt(heapSize)
+                .putInt((int) crc.getValue());
+        header.flip();
+
+        File tmp = new File(file.getPath() + ".tmp");
+        RandomAccessFile out = new RandomAccessFile(tmp, "rw");
+        try {
+            FileChannel channel = out.getChannel();
+            channel.truncate(0);
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            while (body.hasRemaining()) {
+                channel.write(body);
+            }
+            channel.force(false);
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Could not move snapshot into place: " + file);
+        }
+    }
+
+    /**
+     * Reads the snapshot in {@code file}.
+     *
+     * @return the catalog, or {@code null} if there is no usable snapshot for {@code sourceKey}
+     */
+    public static List<Movie> read(File file, String sourceKey) {
+        if (!file.exists() || file.length() < HEADER_SIZE) {
+            return null;
+        }
+        try {
+            RandomAccessFile in = new RandomAccessFile(file, "r");
+            try {
+                FileChannel channel = in.getChannel();
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                        channel.size());
+                return decode(buffer, sourceKey);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Could not read snapshot " + file, e);
+            return null;
+        }
+    }
+
+    private static List<Movie> decode(ByteBuffer buffer, String sourceKey) {
+        int magic = buffer.getInt();
+        short version = buffer.getShort();
+        short recordSize = buffer.getShort();
+        int sourceHash = buffer.getInt();
+        int count = buffer.getInt();
+        int heapSize = buffer.getInt();
+        int expectedCrc = buffer.getInt();
+
+        if (magic != MAGIC || version != FORMAT_VERSION || recordSize != RECORD_SIZE) {
+            Log.i(TAG, "Rejecting snapshot with format version " + version);
+            return null;
+        }
+        if (sourceHash != sourceKey.hashCode()) {
+            Log.i(TAG, "Rejecting snapshot of another catalog source");
+            return null;
+        }
+        long bodySize = (long) count * RECORD_SIZE + heapSize;
+        if (count < 0 || heapSize < 0 || HEADER_SIZE + bodySize != buffer.limit()) {
+            Log.w(TAG, "Rejecting truncated snapshot");
+            return null;
+        }
+        if (crcOf(buffer, HEADER_SIZE, (int) bodySize) != expectedCrc) {
+            Log.w(TAG, "Rejecting corrupt snapshot");
+            return null;
+        }
+
+        int heapStart = HEADER_SIZE + count * RECORD_SIZE;
+        SparseArray<String> strings = new SparseArray<String>();
+        String[] fields = new String[FIELD_COUNT];
+        List<Movie> catalog = new ArrayList<Movie>(count);
+        for (int i = 0; i < count; i++) {
+            int record = HEADER_SIZE + i * RECORD_SIZE;
+            long id = buffer.getLong(record);
+            for (int f = 0; f < FIELD_COUNT; f++) {
+                int offset = buffer.getInt(record + 8 + f * 8);
+                int length = buffer.getInt(record + 8 + f * 8 + 4);
+                if (offset == NULL_OFFSET) {
+                    fields[f] = null;
+                    continue;
+                }
+                if (offset < 0 || length < 0 || (long) offset + length > heapSize) {
+                    Log.w(TAG, "Rejecting snapshot with a bad string reference");
+                    return null;
+                }
+                // Equal strings share a heap offset, decode them once.
+                String value = strings.get(offset);
+                if (value == null) {
+                    value = decodeString(buffer, heapStart + offset, length);
+                    strings.put(offset, value);
+                }
+                fields[f] = value;
+            }
+            Movie movie = MovieList.buildMovieInfo(fields[0], fields[1], fields[2], fields[3],
+                    fields[4], fields[5], fields[6]);
+            // Repeated videos were numbered when the feed was read, keep their ids.
+            movie.setId(id);
+            catalog.add(movie);
+        }
+        return catalog;
+    }
+
+    /*
+     * Field order of a record; decode() relies on it matching MovieList.buildMovieInfo().
+     */
+    private static String[] fieldsOf(Movie movie) {
+        return new String[]{
+                movie.getCategory(),
+                movie.getTitle(),
+                movie.getDescription(),
+                movie.getStudio(),
+                movie.getVideoUrl(),
+                movie.getCardImageUrl(),
+                movie.getBackgroundImageUrl()
+        };
+    }
+
+    private static String decodeString(ByteBuffer buffer, int position, int length) {
+        byte[] bytes = new byte[length];
+        ByteBuffer view = buffer.duplicate();
+        view.position(position);
+        view.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static int crcOf(ByteBuffer buffer, int position, int length) {
+        CRC32 crc = new CRC32();
+        byte[] chunk = new byte[Math.min(CRC_CHUNK_SIZE, Math.max(length, 1))];
+        ByteBuffer view = buffer.duplicate();
+        view.position(position);
+        int remaining = length;
+        while (remaining > 0) {
+            int n = Math.min(remaining, chunk.length);
+            view.get(chunk, 0, n);
+            crc.update(chunk, 0, n);
+            remaining -= n;
+        }
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,132 @@
+package com.testapp.catalog;
+
+import com.testapp.amazontvsample.Movie;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The catalog in feed order plus, for every category, the ordinals of its movies, and a lookup
+ * by movie id.
+ * <p>
+ * Ordinals are positions in feed order and are kept in plain {@code int} arrays, so a row is
+ * read in O(row size) without touching the rest of the catalog. Movies are added by a single
+ * writer, normally the main thread as catalog batches arrive; every other method may be called
+ * from any thread and sees a consistent prefix of the catalog.
+ */
+public final class CategoryIndex {
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int INITIAL_POSTING_CAPACITY = 16;
+
+    private final ConcurrentHashMap<String, Posting> mPostings =
+            new ConcurrentHashMap<String, Posting>();
+    private final ConcurrentHashMap<Long, Movie> mById = new ConcurrentHashMap<Long, Movie>();
+    private volatile Movie[] mMovies = new Movie[INITIAL_CAPACITY];
+    private volatile int mCount;
+
+    public static CategoryIndex build(List<Movie> catalog) {
+        CategoryIndex index = new CategoryIndex();
+        index.append(catalog);
+        return index;
+    }
+
+    /**
+     * Appends movies to the catalog. Must not be called from more than one thread at a time.
+     */
+    public void append(List<Movie> movies) {
+        int count = mCount;
+        Movie[] all = mMovies;
+        if (count + movies.size() > all.length) {
+            all = Arrays.copyOf(all, Math.max(all.length * 2, count + movies.size()));
+            mMovies = all;
+        }
+        for (Movie movie : movies) {
+            // The slot is written before the posting publishes its ordinal.
+            all[count] = movie;
+            Posting posting = mPostings.get(keyOf(movie.getCategory()));
+            if (posting == null) {
+                posting = new Posting();
+                mPostings.put(keyOf(movie.getCategory()), posting);
+            }
+            posting.add(count);
+            mById.put(movie.getId(), movie);
+            count++;
+        }
+        mCount = count;
+    }
+
+    /**
+     * Returns the number of movies in the catalog.
+     */
+    public int size() {
+        return mCount;
+    }
+
+    /**
+     * Returns the movie with the given ordinal.
+     */
+    public Movie get(int ordinal) {
+        return mMovies[ordinal];
+    }
+
+    /**
+     * Returns the movie with the given {@link Movie#getId()}, or {@code null}.
+     */
+    public Movie getById(long id) {
+        return mById.get(id);
+    }
+
+    /**
+     * Returns the number of movies in the category.
+     */
+    public int size(String category) {
+        Posting posting = mPostings.get(keyOf(category));
+        return posting == null ? 0 : posting.mSize;
+    }
+
+    /**
+     * Returns up to {@code count} movies of the category, starting at its {@code offset}th
+     * movie.
+     */
+    public List<Movie> getMovies(String category, int offset, int count) {
+        Posting posting = mPostings.get(keyOf(category));
+        if (posting == null) {
+            return new ArrayList<Movie>(0);
+        }
+        // Size first: a grown id array is published before the size that needs it.
+        int size = posting.mSize;
+        int[] ids = posting.mIds;
+        Movie[] all = mMovies;
+        int end = Math.min(size, offset + count);
+        List<Movie> movies = new ArrayList<Movie>(Math.max(0, end - offset));
+        for (int i = offset; i < end; i++) {
+            movies.add(all[ids[i]]);
+        }
+        return movies;
+    }
+
+    /*
+     * ConcurrentHashMap does not take null keys, movies without a category share the "" key.
+     */
+    private static String keyOf(String category) {
+        return category == null ? "" : category;
+    }
+
+    private static final class Posting {
+        volatile int[] mIds = new int[INITIAL_POSTING_CAPACITY];
+        volatile int mSize;
+
+        void add(int ordinal) {
+            int[] ids = mIds;
+            int size = mSize;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                mIds = ids;
+            }
+            ids[size] = ordinal;
+            mSize = size + 1;
+        }
+    }
+}
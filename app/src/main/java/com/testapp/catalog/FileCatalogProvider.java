@@ -0,0 +1,23 @@
+package com.testapp.catalog;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the catalog feed from a local file, e.g. one pushed to the device for testing.
+ */
+public class FileCatalogProvider extends StreamingCatalogProvider {
+    private final File mFile;
+
+    public FileCatalogProvider(File file) {
+        mFile = file;
+    }
+
+    @Override
+    protected InputStream openStream() throws IOException {
+        return new BufferedInputStream(new FileInputStream(mFile));
+    }
+}
@@ -0,0 +1,297 @@
+package com.testapp.catalog;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.testapp.amazontvsample.Movie;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Precomputed "related titles" for every movie of a catalog.
+ * <p>
+ * Two movies are related by the title words and studio they share, weighted so that rare words
+ * count more than common ones, with a bonus for being in the same category. The best
+ * {@link #MAX_NEIGHBORS} of each movie are worked out once, in the background, and kept as
+ * ordinals in a flat {@code int} array; movies with too few matches are topped up with the
+ * movies that follow them in their category. Other copies of the same video are never listed.
+ * <p>
+ * An index is immutable once built and may be read from any thread.
+ */
+public final class RelatedIndex {
+    public static final int MAX_NEIGHBORS = 10;
+
+    /*
+     * Words or studios shared by more movies than this say little about any of them and would
+     * make the build quadratic, they are skipped.
+     */
+    private static final int MAX_POSTING = 1000;
+    private static final int WEIGHT_STUDIO = 3;
+    private static final int WEIGHT_CATEGORY = 2;
+    private static final int NONE = -1;
+
+    private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor();
+    private static final Handler sHandler = new Handler(Looper.getMainLooper());
+
+    public static final RelatedIndex EMPTY = build(new ArrayList<Movie>(0));
+
+    private final Movie[] mMovies;
+    // Movie ids in ascending order and the ordinal of each.
+    private final long[] mSortedIds;
+    private final int[] mSortedOrdinals;
+    // MAX_NEIGHBORS slots per ordinal, the first mNeighborCounts[ordinal] of them used.
+    private final int[] mNeighbors;
+    private final byte[] mNeighborCounts;
+
+    public interface Callback {
+        void onBuilt(RelatedIndex index);
+    }
+
+    private RelatedIndex(Movie[] movies, long[] sortedIds, int[] sortedOrdinals, int[] neighbors,
+                         byte[] neighborCounts) {
+        mMovies = movies;
+        mSortedIds = sortedIds;
+        mSortedOrdinals = sortedOrdinals;
+        mNeighbors = neighbors;
+        mNeighborCounts = neighborCounts;
+    }
+
+    /**
+     * Builds the index of {@code catalog} in the background and delivers it on the main thread.
+     * Indexes are delivered in the order they were requested.
+     */
+    public static void build(final List<Movie> catalog, final Callback callback) {
+        sExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final RelatedIndex index = build(catalog);
+                sHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onBuilt(index);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Returns up to {@code limit} movies related to the movie with the given id, best first.
+     * Empty if the movie is not in the index.
+     */
+    public List<Movie> getRelated(long movieId, int limit) {
+        int position = Arrays.binarySearch(mSortedIds, movieId);
+        if (position < 0) {
+            return new ArrayList<Movie>(0);
+        }
+        int ordinal = mSortedOrdinals[position];
+        int count = Math.min(limit, mNeighborCounts[ordinal]);
+        List<Movie> related = new ArrayList<Movie>(count);
+        for (int i = 0; i < count; i++) {
+            related.add(mMovies[mNeighbors[ordinal * MAX_NEIGHBORS + i]]);
+        }
+        return related;
+    }
+
+    private static RelatedIndex build(List<Movie> catalog) {
+        Movie[] movies = catalog.toArray(new Movie[catalog.size()]);
+        int n = movies.length;
+
+        int[] categories = new int[n];
+        int[] studios = new int[n];
+        int[][] titleWords = new int[n][];
+        Map<String, Integer> categoryIds = new HashMap<String, Integer>();
+        Map<String, Integer> studioIds = new HashMap<String, Integer>();
+        Map<String, Integer> wordIds = new HashMap<String, Integer>();
+        for (int i = 0; i < n; i++) {
+            categories[i] = idOf(categoryIds, movies[i].getCategory());
+            studios[i] = movies[i].getStudio() == null
+                    ? NONE : idOf(studioIds, movies[i].getStudio());
+            List<String> words = SearchIndex.tokenize(movies[i].getTitle());
+            int[] ids = new int[words.size()];
+            int distinct = 0;
+            for (String word : words) {
+                int id = idOf(wordIds, word);
+                if (!contains(ids, distinct, id)) {
+                    ids[distinct++] = id;
+                }
+            }
+            titleWords[i] = Arrays.copyOf(ids, distinct);
+        }
+
+        int[][] byCategory = postings(categories, null, categoryIds.size());
+        int[][] byStudio = postings(studios, null, studioIds.size());
+        int[][] byWord = postings(null, titleWords, wordIds.size());
+        int[] wordWeights = new int[byWord.length];
+        for (int w = 0; w < byWord.length; w++) {
+            // 1 + log2(n / document frequency)
+            wordWeights[w] = 32 - Integer.numberOfLeadingZeros(n / byWord[w].length);
+        }
+        int[] categoryPositions = new int[n];
+        for (int[] posting : byCategory) {
+            for (int p = 0; p < posting.length; p++) {
+                categoryPositions[posting[p]] = p;
+            }
+        }
+
+        int[] neighbors = new int[n * MAX_NEIGHBORS];
+        byte[] neighborCounts = new byte[n];
+        int[] scores = new int[n];
+        int[] touched = new int[16];
+        long[] ranked = new long[16];
+        for (int i = 0; i < n; i++) {
+            int touchedCount = 0;
+            for (int word : titleWords[i]) {
+                touched = grown(touched, touchedCount, byWord[word].length);
+                touchedCount = score(byWord[word], wordWeights[word], i, scores, touched,
+                        touchedCount);
+            }
+            if (studios[i] != NONE) {
+                touched = grown(touched, touchedCount, byStudio[studios[i]].length);
+                touchedCount = score(byStudio[studios[i]], WEIGHT_STUDIO, i, scores, touched,
+                        touchedCount);
+            }
+
+            if (ranked.length < touchedCount) {
+                ranked = new long[touched.length];
+            }
+            for (int t = 0; t < touchedCount; t++) {
+                int j = touched[t];
+                int score = scores[j] + (categories[j] == categories[i] ? WEIGHT_CATEGORY : 0);
+                // Best score first, then the movie earlier in the feed.
+                ranked[t] = ((long) -score << 32) | j;
+                scores[j] = 0;
+            }
+            Arrays.sort(ranked, 0, touchedCount);
+
+            int base = i * MAX_NEIGHBORS;
+            int count = 0;
+            for (int t = 0; t < touchedCount && count < MAX_NEIGHBORS; t++) {
+                count = addNeighbor(movies, i, (int) ranked[t], neighbors, base, count);
+            }
+            int[] category = byCategory[categories[i]];
+            for (int p = 1; p < category.length && count < MAX_NEIGHBORS; p++) {
+                int j = category[(categoryPositions[i] + p) % category.length];
+                count = addNeighbor(movies, i, j, neighbors, base, count);
+            }
+            neighborCounts[i] = (byte) count;
+        }
+
+        long[] sortedIds = new long[n];
+        for (int i = 0; i < n; i++) {
+            sortedIds[i] = movies[i].getId();
+        }
+        Arrays.sort(sortedIds);
+        int[] sortedOrdinals = new int[n];
+        for (int i = 0; i < n; i++) {
+            sortedOrdinals[Arrays.binarySearch(sortedIds, movies[i].getId())] = i;
+        }
+        return new RelatedIndex(movies, sortedIds, sortedOrdinals, neighbors, neighborCounts);
+    }
+
+    /*
+     * Adds the weight to every other movie of the posting, unless the posting is too common to
+     * mean anything. Returns the new number of touched movies.
+     */
+    private static int score(int[] posting, int weight, int self, int[] scores, int[] touched,
+                             int touchedCount) {
+        if (posting.length > MAX_POSTING) {
+            return touchedCount;
+        }
+        for (int j : posting) {
+            if (j == self) {
+                continue;
+            }
+            if (scores[j] == 0) {
+                touched[touchedCount++] = j;
+            }
+            scores[j] += weight;
+        }
+        return touchedCount;
+    }
+
+    private static int addNeighbor(Movie[] movies, int self, int candidate, int[] neighbors,
+                                   int base, int count) {
+        if (candidate == self || sameVideo(movies[self], movies[candidate])) {
+            return count;
+        }
+        for (int k = 0; k < count; k++) {
+            int neighbor = neighbors[base + k];
+            if (neighbor == candidate || sameVideo(movies[neighbor], movies[candidate])) {
+                return count;
+            }
+        }
+        neighbors[base + count] = candidate;
+        return count + 1;
+    }
+
+    private static boolean sameVideo(Movie a, Movie b) {
+        return a.getVideoUrl() != null && a.getVideoUrl().equals(b.getVideoUrl());
+    }
+
+    /*
+     * Groups ordinals by key, either one key per movie or a list of keys per movie.
+     */
+    private static int[][] postings(int[] keys, int[][] keyLists, int keyCount) {
+        int n = keys != null ? keys.length : keyLists.length;
+        int[] sizes = new int[keyCount];
+        for (int i = 0; i < n; i++) {
+            if (keys != null) {
+                if (keys[i] != NONE) {
+                    sizes[keys[i]]++;
+                }
+            } else {
+                for (int key : keyLists[i]) {
+                    sizes[key]++;
+                }
+            }
+        }
+        int[][] postings = new int[keyCount][];
+        for (int k = 0; k < keyCount; k++) {
+            postings[k] = new int[sizes[k]];
+            sizes[k] = 0;
+        }
+        for (int i = 0; i < n; i++) {
+            if (keys != null) {
+                if (keys[i] != NONE) {
+                    postings[keys[i]][sizes[keys[i]]++] = i;
+                }
+            } else {
+                for (int key : keyLists[i]) {
+                    postings[key][sizes[key]++] = i;
+                }
+            }
+        }
+        return postings;
+    }
+
+    private static int[] grown(int[] array, int size, int extra) {
+        return size + extra <= array.length
+                ? array : Arrays.copyOf(array, Math.max(array.length * 2, size + extra));
+    }
+
+    private static boolean contains(int[] array, int size, int value) {
+        for (int i = 0; i < size; i++) {
+            if (array[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int idOf(Map<String, Integer> ids, String key) {
+        String k = key == null ? "" : key;
+        Integer id = ids.get(k);
+        if (id == null) {
+            id = ids.size();
+            ids.put(k, id);
+        }
+        return id;
+    }
+}
@@ -0,0 +1,364 @@
+package com.testapp.catalog;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.testapp.amazontvsample.Movie;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory search over movie titles, studios and descriptions.
+ * <p>
+ * Title and studio words are indexed by every prefix up to {@link #MAX_PREFIX} characters, so
+ * results follow each keystroke. Description words are indexed whole. Every query word has to
+ * match; matches in the title rank above the studio, which ranks above the description.
+ * <p>
+ * Indexing and queries both run on one worker thread, so the index itself needs no locking.
+ * Results are delivered on the main thread, and a query is dropped if a newer one was issued
+ * before it started.
+ */
+public final class SearchIndex {
+    private static final int MAX_PREFIX = 6;
+    private static final int MAX_DESCRIPTION_TERMS = 32;
+
+    private static final int FIELD_TITLE = 1;
+    private static final int FIELD_STUDIO = 2;
+    private static final int FIELD_DESCRIPTION = 4;
+    private static final int FIELD_BITS = 3;
+    private static final int FIELD_MASK = (1 << FIELD_BITS) - 1;
+
+    private static final int WEIGHT_TITLE = 8;
+    private static final int WEIGHT_STUDIO = 4;
+    private static final int WEIGHT_DESCRIPTION = 1;
+    private static final int WEIGHT_WHOLE_WORD = 2;
+
+    private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor();
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final AtomicInteger mQueryGeneration = new AtomicInteger();
+
+    // Only touched on the worker thread.
+    private final List<Movie> mMovies = new ArrayList<Movie>();
+    private final Map<String, IntList> mPrefixes = new HashMap<String, IntList>();
+    private final Map<String, IntList> mWords = new HashMap<String, IntList>();
+    private int[] mScores = new int[0];
+    private int[] mMatched = new int[0];
+    private int[] mTokenScores = new int[0];
+
+    public interface Callback {
+        void onResults(String query, List<Movie> results);
+    }
+
+    /**
+     * Indexes the movies in the background.
+     */
+    public void add(final List<Movie> movies) {
+        sExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (Movie movie : movies) {
+                    index(movie);
+                }
+            }
+        });
+    }
+
+    /**
+     * Looks up the best {@code limit} matches for {@code query} in the background. Nothing is
+     * delivered if another search is started first.
+     */
+    public void search(final String query, final int limit, final Callback callback) {
+        final int generation = mQueryGeneration.incrementAndGet();
+        sExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (generation != mQueryGeneration.get()) {
+                    return;
+                }
+                final List<Movie> results = query(query, limit);
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation == mQueryGeneration.get()) {
+                            callback.onResults(query, results);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Drops any search that has not been delivered yet.
+     */
+    public void cancelSearches() {
+        mQueryGeneration.incrementAndGet();
+    }
+
+    private void index(Movie movie) {
+        int ordinal = mMovies.size();
+        mMovies.add(movie);
+
+        Map<String, Integer> prefixes = new HashMap<String, Integer>();
+        Map<String, Integer> words = new HashMap<String, Integer>();
+        for (String word : tokenize(movie.getTitle())) {
+            addPrefixes(prefixes, word, FIELD_TITLE);
+            addField(words, word, FIELD_TITLE);
+        }
+        for (String word : tokenize(movie.getStudio())) {
+            addPrefixes(prefixes, word, FIELD_STUDIO);
+            addField(words, word, FIELD_STUDIO);
+        }
+        int descriptionTerms = 0;
+        for (String word : tokenize(movie.getDescription())) {
+            if (descriptionTerms >= MAX_DESCRIPTION_TERMS) {
+                break;
+            }
+            if (!words.containsKey(word)) {
+                descriptionTerms++;
+            }
+            addField(words, word, FIELD_DESCRIPTION);
+        }
+
+        post(mPrefixes, prefixes, ordinal);
+        post(mWords, words, ordinal);
+    }
+
+    private List<Movie> query(String query, int limit) {
+        List<String> tokens = tokenize(query);
+        int count = mMovies.size();
+        if (tokens.isEmpty() || count == 0) {
+            return Collections.emptyList();
+        }
+        if (mScores.length < count) {
+            mScores = new int[mMovies.size() * 2];
+            mMatched = new int[mScores.length];
+            mTokenScores = new int[mScores.length];
+        }
+
+        // Only movies matched by the first token can match the whole query.
+        IntList candidates = new IntList();
+        for (int t = 0; t < tokens.size(); t++) {
+            String token = tokens.get(t);
+            IntList touched = new IntList();
+            IntList prefixPostings = mPrefixes.get(prefixOf(token));
+            if (prefixPostings != null) {
+                for (int i = 0; i < prefixPostings.mSize; i++) {
+                    int entry = prefixPostings.mValues[i];
+                    int ordinal = entry >>> FIELD_BITS;
+                    if (mMatched[ordinal] != t) {
+                        continue;
+                    }
+                    int fields = entry & FIELD_MASK;
+                    if (token.length() > MAX_PREFIX) {
+                        fields = longPrefixFields(mMovies.get(ordinal), token);
+                    }
+                    score(ordinal, weightOf(fields), touched);
+                }
+            }
+            IntList wordPostings = mWords.get(token);
+            if (wordPostings != null) {
+                for (int i = 0; i < wordPostings.mSize; i++) {
+                    int entry = wordPostings.mValues[i];
+                    int ordinal = entry >>> FIELD_BITS;
+                    if (mMatched[ordinal] == t) {
+                        int fields = entry & FIELD_MASK;
+                        score(ordinal, weightOf(fields) + WEIGHT_WHOLE_WORD, touched);
+                    }
+                }
+            }
+            for (int i = 0; i < touched.mSize; i++) {
+                int ordinal = touched.mValues[i];
+                mScores[ordinal] += mTokenScores[ordinal];
+                mTokenScores[ordinal] = 0;
+                mMatched[ordinal] = t + 1;
+            }
+            if (t == 0) {
+                candidates = touched;
+            }
+        }
+
+        // Keep the best matches in a min-heap of packed (score, ordinal) longs; ties go to the
+        // movie earlier in the feed.
+        long[] heap = new long[limit];
+        int heapSize = 0;
+        for (int i = 0; i < candidates.mSize; i++) {
+            int ordinal = candidates.mValues[i];
+            if (mMatched[ordinal] == tokens.size()) {
+                long ranked = ((long) mScores[ordinal] << 32) | (Integer.MAX_VALUE - ordinal);
+                if (heapSize < limit) {
+                    heap[heapSize] = ranked;
+                    siftUp(heap, heapSize++);
+                } else if (limit > 0 && ranked > heap[0]) {
+                    heap[0] = ranked;
+                    siftDown(heap, heapSize);
+                }
+            }
+            mScores[ordinal] = 0;
+            mMatched[ordinal] = 0;
+        }
+
+        Movie[] results = new Movie[heapSize];
+        for (int i = heapSize - 1; i >= 0; i--) {
+            results[i] = mMovies.get(Integer.MAX_VALUE - (int) heap[0]);
+            heap[0] = heap[i];
+            siftDown(heap, i);
+        }
+        return Arrays.asList(results);
+    }
+
+    private static void siftUp(long[] heap, int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (heap[parent] <= heap[index]) {
+                return;
+            }
+            long tmp = heap[parent];
+            heap[parent] = heap[index];
+            heap[index] = tmp;
+            index = parent;
+        }
+    }
+
+    private static void siftDown(long[] heap, int size) {
+        int index = 0;
+        while (true) {
+            int smallest = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < size && heap[left] < heap[smallest]) {
+                smallest = left;
+            }
+            if (right < size && heap[right] < heap[smallest]) {
+                smallest = right;
+            }
+            if (smallest == index) {
+                return;
+            }
+            long tmp = heap[smallest];
+            heap[smallest] = heap[index];
+            heap[index] = tmp;
+            index = smallest;
+        }
+    }
+
+    private void score(int ordinal, int score, IntList touched) {
+        if (score == 0) {
+            return;
+        }
+        if (mTokenScores[ordinal] == 0) {
+            touched.add(ordinal);
+        }
+        mTokenScores[ordinal] = Math.max(mTokenScores[ordinal], score);
+    }
+
+    /*
+     * Prefix postings only cover MAX_PREFIX characters; longer query words are checked against
+     * the title and studio themselves.
+     */
+    private static int longPrefixFields(Movie movie, String token) {
+        int fields = 0;
+        if (hasWordStartingWith(movie.getTitle(), token)) {
+            fields |= FIELD_TITLE;
+        }
+        if (hasWordStartingWith(movie.getStudio(), token)) {
+            fields |= FIELD_STUDIO;
+        }
+        return fields;
+    }
+
+    private static boolean hasWordStartingWith(String text, String token) {
+        if (text == null) {
+            return false;
+        }
+        for (int i = 0; i + token.length() <= text.length(); i++) {
+            boolean wordStart = i == 0 || !Character.isLetterOrDigit(text.charAt(i - 1));
+            if (wordStart && text.regionMatches(true, i, token, 0, token.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int weightOf(int fields) {
+        if ((fields & FIELD_TITLE) != 0) {
+            return WEIGHT_TITLE;
+        } else if ((fields & FIELD_STUDIO) != 0) {
+            return WEIGHT_STUDIO;
+        } else if ((fields & FIELD_DESCRIPTION) != 0) {
+            return WEIGHT_DESCRIPTION;
+        }
+        return 0;
+    }
+
+    private static void addPrefixes(Map<String, Integer> prefixes, String word, int field) {
+        for (int length = 1; length <= Math.min(word.length(), MAX_PREFIX); length++) {
+            addField(prefixes, word.substring(0, length), field);
+        }
+    }
+
+    private static void addField(Map<String, Integer> fields, String key, int field) {
+        Integer current = fields.get(key);
+        fields.put(key, current == null ? field : current | field);
+    }
+
+    private static void post(Map<String, IntList> postings, Map<String, Integer> fields,
+                             int ordinal) {
+        for (Map.Entry<String, Integer> entry : fields.entrySet()) {
+            IntList posting = postings.get(entry.getKey());
+            if (posting == null) {
+                posting = new IntList();
+                postings.put(entry.getKey(), posting);
+            }
+            posting.add((ordinal << FIELD_BITS) | entry.getValue());
+        }
+    }
+
+    private static String prefixOf(String token) {
+        return token.length() > MAX_PREFIX ? token.substring(0, MAX_PREFIX) : token;
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<String>();
+        if (text == null) {
+            return tokens;
+        }
+        String lower = text.toLowerCase(Locale.US);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    /*
+     * Growable int array, postings are kept unboxed.
+     */
+    private static final class IntList {
+        int[] mValues = new int[4];
+        int mSize;
+
+        void add(int value) {
+            if (mSize == mValues.length) {
+                mValues = Arrays.copyOf(mValues, mSize * 2);
+            }
+            mValues[mSize++] = value;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.testapp.catalog;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.testapp.amazontvsample.Movie;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Puts a {@link CatalogSnapshot} in front of another provider.
+ * <p>
+ * If a valid snapshot exists it is delivered right away and the wrapped provider loads in the
+ * background; its result arrives through {@link Callback#onRefresh}. Without a snapshot the
+ * wrapped provider's batches are passed through as they come. Either way every successful load
+ * is written back as the snapshot for the next cold start.
+ */
+public class SnapshotCatalogProvider implements CatalogProvider {
+    private static final String TAG = "SnapshotCatalog";
+
+    private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor();
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final File mFile;
+    private final String mSourceKey;
+    private final CatalogProvider mSource;
+    private volatile boolean mCancelled;
+
+    /**
+     * @param sourceKey identifies the feed behind {@code source}; a snapshot taken from another
+     *                  feed is ignored
+     */
+    public SnapshotCatalogProvider(File file, String sourceKey, CatalogProvider source) {
+        mFile = file;
+        mSourceKey = sourceKey;
+        mSource = source;
+    }
+
+    @Override
+    public void load(final Callback callback) {
+        mCancelled = false;
+        sExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<Movie> snapshot = CatalogSnapshot.read(mFile, mSourceKey);
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (mCancelled) {
+                            return;
+                        }
+                        if (snapshot == null) {
+                            mSource.load(new PassThroughCallback(callback));
+                        } else {
+                            Log.d(TAG, "Loaded " + snapshot.size() + " movies from snapshot");
+                            callback.onBatch(snapshot);
+                            callback.onComplete(snapshot);
+                            mSource.load(new RefreshCallback(callback));
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    @Override
+    public void cancel() {
+        mCancelled = true;
+        mHandler.removeCallbacksAndMessages(null);
+        mSource.cancel();
+    }
+
+    private void writeSnapshot(final List<Movie> catalog) {
+        sExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    CatalogSnapshot.write(mFile, mSourceKey, catalog);
+                } catch (IOException e) {
+                    Log.w(TAG, "Could not write snapshot", e);
+                }
+            }
+        });
+    }
+
+    /*
+     * No snapshot: the feed's batches go straight to the screen.
+     */
+    private final class PassThroughCallback implements Callback {
+        private final Callback mCallback;
+
+        PassThroughCallback(Callback callback) {
+            mCallback = callback;
+        }
+
+        @Override
+        public void onBatch(List<Movie> batch) {
+            mCallback.onBatch(batch);
+        }
+
+        @Override
+        public void onComplete(List<Movie> catalog) {
+            writeSnapshot(catalog);
+            mCallback.onComplete(catalog);
+        }
+
+        @Override
+        public void onRefresh(List<Movie> catalog) {
+            writeSnapshot(catalog);
+            mCallback.onRefresh(catalog);
+        }
+
+        @Override
+        public void onError(Exception e) {
+            mCallback.onError(e);
+        }
+    }
+
+    /*
+     * The snapshot is on screen: collect the fresh feed quietly and swap it in once complete.
+     */
+    private final class RefreshCallback implements Callback {
+        private final Callback mCallback;
+
+        RefreshCallback(Callback callback) {
+            mCallback = callback;
+        }
+
+        @Override
+        public void onBatch(List<Movie> batch) {
+        }
+
+        @Override
+        public void onComplete(List<Movie> catalog) {
+            writeSnapshot(catalog);
+            mCallback.onRefresh(catalog);
+        }
+
+        @Override
+        public void onRefresh(List<Movie> catalog) {
+            onComplete(catalog);
+        }
+
+        @Override
+        public void onError(Exception e) {
+            // The snapshot stays on screen, try again on the next launch.
+            Log.w(TAG, "Catalog refresh failed", e);
+        }
+    }
+}
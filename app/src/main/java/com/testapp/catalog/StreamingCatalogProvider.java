@@ -0,0 +1,243 @@
+package com.testapp.catalog;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.Log;
+
+import com.testapp.amazontvsample.Movie;
+import com.testapp.amazontvsample.MovieList;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Base class for providers that read a JSON feed with a streaming parser.
+ * <p>
+ * The feed uses the layout of the Android TV sample catalog:
+ * <pre>
+ * {"googlevideos": [{"category": "...", "videos": [{"title": "...", "description": "...",
+ *   "studio": "...", "sources": ["..."], "card": "...", "background": "..."}]}]}
+ * </pre>
+ * Movies are handed out while the feed is still being read. The first batch is kept small so
+ * the first row shows quickly, later batches grow up to {@link #MAX_BATCH_SIZE}.
+ * <p>
+ * Movie ids come from the category and video URL, see {@link MovieList#buildMovieInfo}. A video
+ * listed more than once in a category gets a distinct id per occurrence, in feed order.
+ */
+public abstract class StreamingCatalogProvider implements CatalogProvider {
+    private static final String TAG = "StreamingCatalog";
+
+    private static final int FIRST_BATCH_SIZE = 25;
+    private static final int MAX_BATCH_SIZE = 1000;
+
+    private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor();
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private volatile boolean mCancelled;
+
+    /**
+     * Opens the feed. Called on a background thread, the stream is closed by the caller.
+     */
+    protected abstract InputStream openStream() throws IOException;
+
+    @Override
+    public void load(final Callback callback) {
+        mCancelled = false;
+        sExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    InputStream in = openStream();
+                    try {
+                        parse(in, callback);
+                    } finally {
+                        in.close();
+                    }
+                } catch (final Exception e) {
+                    Log.e(TAG, "Failed to load catalog", e);
+                    post(new Runnable() {
+                        @Override
+                        public void run() {
+                            callback.onError(e);
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    @Override
+    public void cancel() {
+        mCancelled = true;
+        mHandler.removeCallbacksAndMessages(null);
+    }
+
+    private void parse(InputStream in, final Callback callback) throws IOException {
+        final List<Movie> catalog = new ArrayList<Movie>();
+        Set<Long> ids = new HashSet<Long>();
+        List<Movie> batch = new ArrayList<Movie>();
+        int batchSize = FIRST_BATCH_SIZE;
+
+        JsonReader reader = new JsonReader(new InputStreamReader(in, "UTF-8"));
+        reader.beginObject();
+        while (reader.hasNext() && !mCancelled) {
+            if (!"googlevideos".equals(reader.nextName())) {
+                reader.skipValue();
+                continue;
+            }
+            reader.beginArray();
+            while (reader.hasNext() && !mCancelled) {
+                // Videos read before the "category" name of their group are held back until
+                // it is known.
+                List<Movie> pending = new ArrayList<Movie>();
+                String category = null;
+
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String name = reader.nextName();
+                    if ("category".equals(name)) {
+                        category = reader.nextString();
+                        for (Movie movie : pending) {
+                            movie.setCategory(category);
+                            assignId(movie, ids);
+                        }
+                        batch.addAll(pending);
+                        pending.clear();
+                    } else if ("videos".equals(name)) {
+                        reader.beginArray();
+                        while (reader.hasNext() && !mCancelled) {
+                            Movie movie = readMovie(reader, category);
+                            if (category == null) {
+                                pending.add(movie);
+                            } else {
+                                assignId(movie, ids);
+                                batch.add(movie);
+                            }
+                            if (batch.size() >= batchSize) {
+                                catalog.addAll(batch);
+                                deliverBatch(callback, batch);
+                                batch = new ArrayList<Movie>();
+                                batchSize = Math.min(batchSize * 2, MAX_BATCH_SIZE);
+                            }
+                        }
+                        if (mCancelled) {
+                            return;
+                        }
+                        reader.endArray();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+                for (Movie movie : pending) {
+                    assignId(movie, ids);
+                }
+                batch.addAll(pending);
+            }
+            if (mCancelled) {
+                return;
+            }
+            reader.endArray();
+        }
+        if (mCancelled) {
+            return;
+        }
+
+        if (!batch.isEmpty()) {
+            catalog.addAll(batch);
+            deliverBatch(callback, batch);
+        }
+        post(new Runnable() {
+            @Override
+            public void run() {
+                callback.onComplete(catalog);
+            }
+        });
+    }
+
+    private static Movie readMovie(JsonReader reader, String category) throws IOException {
+        String title = null;
+        String description = null;
+        String studio = null;
+        String videoUrl = null;
+        String cardImageUrl = null;
+        String bgImageUrl = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.skipValue();
+            } else if ("title".equals(name)) {
+                title = reader.nextString();
+            } else if ("description".equals(name)) {
+                description = reader.nextString();
+            } else if ("studio".equals(name)) {
+                studio = reader.nextString();
+            } else if ("card".equals(name)) {
+                cardImageUrl = reader.nextString();
+            } else if ("background".equals(name)) {
+                bgImageUrl = reader.nextString();
+            } else if ("sources".equals(name)) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    String source = reader.nextString();
+                    if (videoUrl == null) {
+                        videoUrl = source;
+                    }
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return MovieList.buildMovieInfo(category, title, description, studio, videoUrl,
+                cardImageUrl, bgImageUrl);
+    }
+
+    /*
+     * Gives the movie its id from the feed, numbering repeated occurrences of a key.
+     */
+    private static void assignId(Movie movie, Set<Long> ids) {
+        String key = MovieList.feedKeyOf(movie);
+        long id = Movie.stableId(movie.getCategory(), key);
+        for (int occurrence = 1; !ids.add(id); occurrence++) {
+            id = Movie.stableId(movie.getCategory(), key + '#' + occurrence);
+        }
+        movie.setId(id);
+    }
+
+    private void deliverBatch(final Callback callback, final List<Movie> batch) {
+        post(new Runnable() {
+            @Override
+            public void run() {
+                callback.onBatch(batch);
+            }
+        });
+    }
+
+    private void post(final Runnable runnable) {
+        if (mCancelled) {
+            return;
+        }
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!mCancelled) {
+                    runnable.run();
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,61 @@
+package com.testapp.catalog;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Streams the catalog feed over HTTP.
+ */
+public class UrlCatalogProvider extends StreamingCatalogProvider {
+    private static final int CONNECT_TIMEOUT = 10000;
+    private static final int READ_TIMEOUT = 15000;
+
+    private final String mUrl;
+
+    public UrlCatalogProvider(String url) {
+        mUrl = url;
+    }
+
+    @Override
+    protected InputStream openStream() throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(mUrl).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT);
+        connection.setReadTimeout(READ_TIMEOUT);
+        int status = connection.getResponseCode();
+        if (status != HttpURLConnection.HTTP_OK) {
+            connection.disconnect();
+            throw new IOException("Catalog request failed with HTTP " + status);
+        }
+        try {
+            return new ConnectionInputStream(connection);
+        } catch (IOException e) {
+            connection.disconnect();
+            throw e;
+        }
+    }
+
+    /*
+     * The response body; closing it also releases the connection.
+     */
+    private static final class ConnectionInputStream extends FilterInputStream {
+        private final HttpURLConnection mConnection;
+
+        ConnectionInputStream(HttpURLConnection connection) throws IOException {
+            super(new BufferedInputStream(connection.getInputStream()));
+            mConnection = connection;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                mConnection.disconnect();
+            }
+        }
+    }
+}
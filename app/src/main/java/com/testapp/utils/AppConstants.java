@@ -9,6 +9,7 @@ public class AppConstants {
     private static boolean isAndroid = false;
     private static String API_DOMAIN = "";
     private static String RVS_DOMAIN= "http://192.168.0.102:8080/RVSSandbox/";// Live RVS Domain = "https://appstore-sdk.amazon.com/"
+    private static String CATALOG_URL = "";// Empty = use the catalog bundled in assets
 
     public static String getApiDomain() {
         return API_DOMAIN;
@@ -18,6 +19,10 @@ public class AppConstants {
         return RVS_DOMAIN;
     }
 
+    public static String getCatalogUrl() {
+        return CATALOG_URL;
+    }
+
     public static boolean isAndroid() {
         return isAndroid;
     }